@@ -0,0 +1,108 @@
+package kmdb.movies_api.benchmarks;
+
+import kmdb.movies_api.MoviesApiApplication;
+import kmdb.movies_api.entities.Actor;
+import kmdb.movies_api.entities.Genre;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// application running on a temporary SQLite file seeded with a synthetic catalogue
+class Catalogue implements AutoCloseable {
+
+    static final String[] WORDS = {"Silent", "River", "Night", "Golden", "Last", "City", "Broken", "Summer",
+            "Shadow", "King", "Lost", "Star", "Winter", "Dark", "Road", "Dream", "Fire", "Blue", "Iron", "Ghost"};
+    static final String[] GENRES = {"Action", "Adventure", "Animation", "Biography", "Comedy", "Crime",
+            "Documentary", "Drama", "Family", "Fantasy", "History", "Horror", "Music", "Musical", "Mystery",
+            "Romance", "Sci-Fi", "Sport", "Thriller", "Western"};
+    static final int FIRST_YEAR = 1950;
+    static final int LAST_YEAR = 2024;
+
+    final int movies;
+    final ConfigurableApplicationContext context;
+    final List<Long> actorIds;
+    private final Path database;
+
+    // extra arguments are passed to the application as command line properties
+    // warmup is off, so runs start cold and the developer's kmdb-warmup.json is neither read nor overwritten
+    Catalogue(int movies, WebApplicationType web, String... args) throws IOException {
+        this.movies = movies;
+        database = Files.createTempFile("kmdb-benchmark", ".db");
+        context = new SpringApplicationBuilder(MoviesApiApplication.class)
+                .web(web)
+                .run(Stream.concat(Stream.of(
+                        "--spring.datasource.url=jdbc:sqlite:" + database,
+                        "--spring.main.banner-mode=off",
+                        "--kmdb.warmup.enabled=false",
+                        "--logging.level.root=WARN"), Stream.of(args)).toArray(String[]::new));
+        actorIds = seed();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        Files.deleteIfExists(database);
+        Files.deleteIfExists(Path.of(database + "-wal"));
+        Files.deleteIfExists(Path.of(database + "-shm"));
+    }
+
+    // every movie gets two genres and three actors, titles are two words from WORDS plus a number
+    private List<Long> seed() {
+        GenreRepository genreRepository = getBean(GenreRepository.class);
+        ActorRepository actorRepository = getBean(ActorRepository.class);
+        MovieRepository movieRepository = getBean(MovieRepository.class);
+        TransactionTemplate transaction = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+        Random random = new Random(42);
+
+        List<Genre> genres = new ArrayList<>();
+        for (String name : GENRES) {
+            genres.add(new Genre(name));
+        }
+        List<Actor> actors = new ArrayList<>();
+        for (int i = 0; i < Math.max(movies / 4, 10); i++) {
+            Actor actor = new Actor("Actor " + i);
+            actor.setBirthDate((FIRST_YEAR + random.nextInt(50)) + "-01-01");
+            actors.add(actor);
+        }
+        transaction.executeWithoutResult(status -> {
+            genreRepository.saveAll(genres);
+            actorRepository.saveAll(actors);
+        });
+
+        for (int from = 0; from < movies; from += 1000) {
+            int to = Math.min(from + 1000, movies);
+            List<Movie> chunk = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Movie movie = new Movie(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i,
+                        FIRST_YEAR + random.nextInt(LAST_YEAR - FIRST_YEAR + 1), 80 + random.nextInt(100));
+                for (int g = 0; g < 2; g++) {
+                    movie.setGenre(genres.get(random.nextInt(genres.size())));
+                }
+                for (int a = 0; a < 3; a++) {
+                    movie.setActor(actors.get(random.nextInt(actors.size())));
+                }
+                chunk.add(movie);
+            }
+            transaction.executeWithoutResult(status -> movieRepository.saveAll(chunk));
+        }
+        return actors.stream().map(Actor::getId).toList();
+    }
+}
@@ -0,0 +1,34 @@
+package kmdb.movies_api.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.util.List;
+
+// catalogue shared by the benchmarks of a trial
+// size is set with the movies parameter, e.g. -p movies=10000
+@State(Scope.Benchmark)
+public class CatalogueState {
+
+    @Param("1000")
+    public int movies;
+
+    List<Long> actorIds;
+    private Catalogue catalogue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        catalogue = new Catalogue(movies, WebApplicationType.NONE);
+        actorIds = catalogue.actorIds;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        catalogue.close();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return catalogue.getBean(type);
+    }
+}
@@ -0,0 +1,136 @@
+package kmdb.movies_api.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// closed-loop HTTP load test: every client sends its next request as soon as the previous one is answered
+// runs the same load against Tomcat on its platform thread pool and on virtual threads
+// options: movies=1000 concurrency=50,200,800 duration=10 modes=platform,virtual
+public class LoadTest {
+
+    record Result(String mode, int concurrency, long requests, long errors, double requestsPerSecond,
+                  double p50Millis, double p99Millis, double maxMillis) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        int movies = Integer.parseInt(options.getOrDefault("movies", "1000"));
+        int[] concurrencyLevels = Arrays.stream(options.getOrDefault("concurrency", "50,200,800").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "10")));
+        String output = options.getOrDefault("output", "target/load-test.json");
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : options.getOrDefault("modes", "platform,virtual").split(",")) {
+            try (Catalogue catalogue = new Catalogue(movies, WebApplicationType.SERVLET, "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + mode.equals("virtual"))) {
+                int port = ((WebServerApplicationContext) catalogue.context).getWebServer().getPort();
+                run(mode, port, movies, concurrencyLevels[0], duration); // warm up
+                for (int concurrency : concurrencyLevels) {
+                    Result result = run(mode, port, movies, concurrency, duration);
+                    System.out.println(result);
+                    results.add(result);
+                }
+            }
+        }
+
+        System.out.printf("%n%-9s %11s %9s %7s %9s %9s %9s %9s%n",
+                "mode", "concurrency", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+        for (Result result : results) {
+            System.out.printf("%-9s %11d %9d %7d %9.1f %9.1f %9.1f %9.1f%n", result.mode(), result.concurrency(),
+                    result.requests(), result.errors(), result.requestsPerSecond(),
+                    result.p50Millis(), result.p99Millis(), result.maxMillis());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(output), results);
+        System.out.println("Load test results are saved to " + output);
+    }
+
+    private static Result run(String mode, int port, int movies, int concurrency, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> clients = new ArrayList<>();
+        long errors = 0;
+        List<Long> latencies = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            for (int i = 0; i < concurrency; i++) {
+                clients.add(executor.submit(() -> client(http, port, movies, deadline)));
+            }
+            for (Future<long[]> client : clients) {
+                long[] samples = client.get();
+                for (long sample : samples) {
+                    if (sample < 0) {
+                        errors++;
+                    } else {
+                        latencies.add(sample);
+                    }
+                }
+            }
+        }
+
+        Collections.sort(latencies);
+        double seconds = duration.toNanos() / 1e9;
+        return new Result(mode, concurrency, latencies.size(), errors, latencies.size() / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    // latencies of one client in nanoseconds, failed requests are recorded as -1
+    private static long[] client(HttpClient http, int port, int movies, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> samples = new ArrayList<>();
+        while (System.nanoTime() < deadline) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path(random, movies)))
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                samples.add(response.statusCode() == 200 ? System.nanoTime() - start : -1);
+            } catch (Exception e) {
+                samples.add(-1L);
+            }
+        }
+        return samples.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // mix of paged listing, full-text search and release year range reads
+    private static String path(ThreadLocalRandom random, int movies) {
+        return switch (random.nextInt(3)) {
+            case 0 -> "/api/movies?page=" + random.nextInt(Math.max(movies / 20, 1)) + "&size=20";
+            case 1 -> "/api/movies/search?title=" + Catalogue.WORDS[random.nextInt(Catalogue.WORDS.length)];
+            default -> {
+                int year = random.nextInt(Catalogue.FIRST_YEAR, Catalogue.LAST_YEAR - 4);
+                yield "/api/movies?releaseYearFrom=" + year + "&releaseYearTo=" + (year + 4) + "&page=0&size=20";
+            }
+        };
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+}
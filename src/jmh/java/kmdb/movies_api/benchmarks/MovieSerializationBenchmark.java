@@ -0,0 +1,81 @@
+package kmdb.movies_api.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Jackson serialization of movies with their actors and genres in every format the API serves,
+// using the application's mappers. The size of a page in each format, plain and gzipped, is printed once per trial
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieSerializationBenchmark {
+
+    private static final TypeReference<List<Movie>> MOVIE_LIST = new TypeReference<>() {
+    };
+
+    @Param({ "json", "cbor", "smile" })
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private Movie movie;
+    private List<Movie> page;
+    private byte[] pageBytes;
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogueState catalogue) throws IOException {
+        objectMapper = switch (format) {
+            case "cbor" -> catalogue.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+            case "smile" -> catalogue.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+            default -> catalogue.getBean(ObjectMapper.class);
+        };
+        page = catalogue.getBean(MovieService.class).getMoviesByPage(0, 20).orElseThrow();
+        movie = page.get(0);
+        pageBytes = objectMapper.writeValueAsBytes(page);
+        System.out.printf("%n%s: page of %d movies is %d bytes, %d bytes gzipped%n",
+                format, page.size(), pageBytes.length, gzip(pageBytes).length);
+    }
+
+    @Benchmark
+    public byte[] serializeMovie() throws IOException {
+        return objectMapper.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    // what a page costs with response compression on
+    @Benchmark
+    public byte[] serializeAndGzipPage() throws IOException {
+        return gzip(objectMapper.writeValueAsBytes(page));
+    }
+
+    // the consumer's side
+    @Benchmark
+    public List<Movie> deserializePage() throws IOException {
+        return objectMapper.readValue(pageBytes, MOVIE_LIST);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
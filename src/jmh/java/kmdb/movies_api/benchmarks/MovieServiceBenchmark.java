@@ -0,0 +1,80 @@
+package kmdb.movies_api.benchmarks;
+
+import kmdb.movies_api.dto.MovieSummary;
+import kmdb.movies_api.entities.Actor;
+import kmdb.movies_api.entities.Genre;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.services.ActorService;
+import kmdb.movies_api.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// service hot paths against a seeded catalogue, each call runs its own transaction like a request would
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private MovieService movieService;
+    private ActorService actorService;
+    private List<Long> actorIds;
+    private int pages;
+    private final AtomicLong added = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogueState catalogue) {
+        movieService = catalogue.getBean(MovieService.class);
+        actorService = catalogue.getBean(ActorService.class);
+        actorIds = catalogue.actorIds;
+        pages = Math.max(catalogue.movies / PAGE_SIZE, 1);
+    }
+
+    @Benchmark
+    public Optional<List<Movie>> getMoviesByPage() {
+        return movieService.getMoviesByPage(ThreadLocalRandom.current().nextInt(pages), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Optional<List<MovieSummary>> getMovieSummariesByPage() {
+        return movieService.getMovieSummaries(null, ThreadLocalRandom.current().nextInt(pages), PAGE_SIZE, null);
+    }
+
+    @Benchmark
+    public Optional<List<Movie>> findMoviesByTitle() {
+        return movieService.findMoviesByTitle(Catalogue.WORDS[ThreadLocalRandom.current().nextInt(Catalogue.WORDS.length)]);
+    }
+
+    @Benchmark
+    public Optional<List<Movie>> getMoviesByReleaseYear() {
+        return movieService.getMoviesByReleaseYear(ThreadLocalRandom.current()
+                .nextInt(Catalogue.FIRST_YEAR, Catalogue.LAST_YEAR + 1));
+    }
+
+    @Benchmark
+    public Optional<List<Movie>> getMoviesByActor() {
+        return actorService.getMoviesByActor(actorIds.get(ThreadLocalRandom.current().nextInt(actorIds.size())), null, 0, "id");
+    }
+
+    // the catalogue grows by one movie per call, titles stay unique within a trial
+    @Benchmark
+    public Object addMovie() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Movie movie = new Movie(Set.of(new Genre(Catalogue.GENRES[random.nextInt(Catalogue.GENRES.length)])));
+        movie.setTitle("Benchmark Movie " + added.incrementAndGet());
+        movie.setReleaseYear(random.nextInt(Catalogue.FIRST_YEAR, Catalogue.LAST_YEAR + 1));
+        movie.setDuration(90);
+        movie.setActors(Set.of(new Actor("Actor " + random.nextInt(actorIds.size()))));
+        return movieService.addMovie(movie);
+    }
+}
@@ -0,0 +1,20 @@
+package kmdb.movies_api.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// caches are created from spring.cache.* in application.properties
+// caching runs before the transaction advice, so a cache hit never opens a transaction or borrows a connection
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String MOVIES = "movies";
+    public static final String ACTORS = "actors";
+    public static final String GENRES = "genres";
+    public static final String MOVIE_ACTORS = "movieActors";
+    public static final String MOVIE_GENRES = "movieGenres";
+    public static final String MOVIE_VERSIONS = "movieVersions";
+
+}
@@ -1,31 +1,93 @@
 package kmdb.movies_api.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.api.callback.Callback;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.sqlite.SQLiteOpenMode;
 
 import javax.sql.DataSource;
 import java.util.Objects;
+import java.util.Properties;
 
 @Configuration
 public class DatabaseConfig {
 
     private final Environment env;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
 
-    public DatabaseConfig(Environment env) {
+    public DatabaseConfig(Environment env, ObjectProvider<MeterRegistry> meterRegistry) {
         this.env = env;
+        this.meterRegistry = meterRegistry;
     }
 
     // configuring database
+    // statements and rows are counted per request unless kmdb.query-count.enabled is false, see QueryCountConfig
     @Bean
     public DataSource dataSource() {
-        final DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(Objects.requireNonNull(env.getProperty("spring.datasource.driver-class-name")));
-        dataSource.setUrl(env.getProperty("spring.datasource.url"));
-        dataSource.setUsername(env.getProperty("spring.datasource.username"));
-        dataSource.setPassword(env.getProperty("spring.datasource.password"));
-        return dataSource;
+        DataSource dataSource = connectionSource();
+        return env.getProperty("kmdb.query-count.enabled", Boolean.class, true)
+                ? new QueryCountingDataSource(dataSource)
+                : dataSource;
     }
 
-}
\ No newline at end of file
+    // picked up by Flyway, stops migration V3 with a readable list of duplicates instead of a failing index
+    @Bean
+    public Callback uniqueNamesCheck() {
+        return new UniqueNamesCheck();
+    }
+
+    private DataSource connectionSource() {
+        if (!env.getProperty("kmdb.datasource.pool.enabled", Boolean.class, true)) { // open a new connection for every call
+            final DriverManagerDataSource dataSource = new DriverManagerDataSource();
+            dataSource.setDriverClassName(Objects.requireNonNull(env.getProperty("spring.datasource.driver-class-name")));
+            dataSource.setUrl(env.getProperty("spring.datasource.url"));
+            dataSource.setUsername(env.getProperty("spring.datasource.username"));
+            dataSource.setPassword(env.getProperty("spring.datasource.password"));
+            dataSource.setConnectionProperties(pragmas(false));
+            return dataSource;
+        }
+
+        // writer opens first so the journal mode is switched to WAL before any reader connects
+        HikariDataSource writer = new HikariDataSource(poolConfig("kmdb-writer", 1, false));
+        HikariDataSource readers = new HikariDataSource(poolConfig("kmdb-reader",
+                env.getProperty("kmdb.datasource.pool.read-size", Integer.class, 4), true));
+        return new SqliteConnectionPool(writer, readers);
+    }
+
+    private HikariConfig poolConfig(String name, int size, boolean readOnly) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setDriverClassName(Objects.requireNonNull(env.getProperty("spring.datasource.driver-class-name")));
+        config.setJdbcUrl(env.getProperty("spring.datasource.url"));
+        config.setMaximumPoolSize(size);
+        config.setMinimumIdle(size);
+        config.setReadOnly(readOnly);
+        config.setConnectionTimeout(env.getProperty("kmdb.datasource.pool.connection-timeout", Long.class, 30000L));
+        config.setDataSourceProperties(pragmas(readOnly));
+        // hikaricp.* meters per pool, including how long requests wait to acquire a connection
+        meterRegistry.ifAvailable(config::setMetricRegistry);
+        return config;
+    }
+
+    // pragmas applied by the SQLite driver to every new connection
+    private Properties pragmas(boolean readOnly) {
+        Properties pragmas = new Properties();
+        if (readOnly) { // read-only connections cannot change the journal mode, WAL is persisted in the file by the writer
+            pragmas.setProperty("open_mode", String.valueOf(SQLiteOpenMode.READONLY.flag));
+        } else {
+            pragmas.setProperty("journal_mode", env.getProperty("kmdb.datasource.pragma.journal-mode", "WAL"));
+        }
+        pragmas.setProperty("synchronous", env.getProperty("kmdb.datasource.pragma.synchronous", "NORMAL"));
+        pragmas.setProperty("mmap_size", env.getProperty("kmdb.datasource.pragma.mmap-size", "268435456"));
+        pragmas.setProperty("cache_size", env.getProperty("kmdb.datasource.pragma.cache-size", "-16000"));
+        pragmas.setProperty("busy_timeout", env.getProperty("kmdb.datasource.pragma.busy-timeout", "5000"));
+        return pragmas;
+    }
+
+}
@@ -0,0 +1,160 @@
+package kmdb.movies_api.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import kmdb.movies_api.controllers.QueryBudget;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// counts the SQL statements and rows of every request, see QueryCountingDataSource
+// the counts are sent as X-Query-Count and X-Query-Rows and recorded in the kmdb.request.statements summary per endpoint
+// requests over the budget of their endpoint (@QueryBudget or kmdb.query-count.default-statement-budget) are logged,
+// with kmdb.query-count.enforce-budget the statement or row over the budget fails the request instead
+// streamed exports read after the handler returned, on another thread, so only the statements before streaming are counted
+@Configuration
+@ConditionalOnProperty(name = "kmdb.query-count.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class QueryCountConfig implements WebMvcConfigurer {
+
+    public static final String STATEMENTS_HEADER = "X-Query-Count";
+    public static final String ROWS_HEADER = "X-Query-Rows";
+
+    private final int defaultStatementBudget;
+    private final boolean enforceBudget;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public QueryCountConfig(Environment env, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.defaultStatementBudget = env.getProperty("kmdb.query-count.default-statement-budget", Integer.class, QueryCounter.UNLIMITED);
+        this.enforceBudget = env.getProperty("kmdb.query-count.enforce-budget", Boolean.class, false);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public OncePerRequestFilter queryCountFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                QueryCounter counter = QueryCounter.start();
+                CountingResponse countingResponse = new CountingResponse(response, counter);
+                try {
+                    chain.doFilter(request, countingResponse);
+                } finally {
+                    QueryCounter.stop();
+                    countingResponse.writeCounts(); // responses without a body
+                    record(counter);
+                }
+            }
+        };
+    }
+
+    // the budget is known once the request is mapped to its handler
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                QueryCounter counter = QueryCounter.current();
+                if (counter != null && handler instanceof HandlerMethod method) {
+                    QueryBudget budget = method.getMethodAnnotation(QueryBudget.class);
+                    String endpoint = request.getMethod() + " " + request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    if (budget == null) {
+                        counter.limit(endpoint, defaultStatementBudget, QueryCounter.UNLIMITED, enforceBudget);
+                    } else if (!budget.pagedBy().isEmpty() && request.getParameter(budget.pagedBy()) == null) {
+                        counter.limit(endpoint, QueryCounter.UNLIMITED, QueryCounter.UNLIMITED, enforceBudget);
+                    } else {
+                        counter.limit(endpoint, budget.statements(), budget.rows(), enforceBudget);
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    private void record(QueryCounter counter) {
+        if (counter.getEndpoint() == null) { // not mapped to a handler
+            return;
+        }
+        if (counter.isOverBudget()) {
+            log.warn("{} went over its budget: {} SQL statements, {} rows, budget {} statements, {} rows",
+                    counter.getEndpoint(), counter.getStatements(), counter.getRows(),
+                    counter.getStatementBudget(), counter.getRowBudget());
+        } else {
+            log.debug("{} ran {} SQL statements, {} rows", counter.getEndpoint(), counter.getStatements(), counter.getRows());
+        }
+        meterRegistry.ifAvailable(registry -> DistributionSummary.builder("kmdb.request.statements")
+                .description("SQL statements per request")
+                .tag("endpoint", counter.getEndpoint())
+                .register(registry)
+                .record(counter.getStatements()));
+    }
+
+    // adds the counts as headers right before the response is committed, later statements are not in the headers
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+
+        private final QueryCounter counter;
+        private boolean countsWritten;
+
+        CountingResponse(HttpServletResponse response, QueryCounter counter) {
+            super(response);
+            this.counter = counter;
+        }
+
+        void writeCounts() {
+            if (!countsWritten && !isCommitted()) {
+                setHeader(STATEMENTS_HEADER, String.valueOf(counter.getStatements()));
+                setHeader(ROWS_HEADER, String.valueOf(counter.getRows()));
+            }
+            countsWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeCounts();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeCounts();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeCounts();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            writeCounts();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            writeCounts();
+            super.sendError(status);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package kmdb.movies_api.config;
+
+import kmdb.movies_api.exceptions.QueryBudgetExceededException;
+
+// SQL statements executed and rows read or written on the current thread, counted by QueryCountingDataSource
+// QueryCountConfig starts a counter for every HTTP request, tests can start one around the code they measure
+public final class QueryCounter {
+
+    public static final int UNLIMITED = -1;
+
+    private static final ThreadLocal<QueryCounter> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rows;
+    private String endpoint;
+    private int statementBudget = UNLIMITED;
+    private long rowBudget = UNLIMITED;
+    private boolean enforced;
+
+    private QueryCounter() {
+    }
+
+    // start counting on the current thread, replacing any counter started before
+    public static QueryCounter start() {
+        QueryCounter counter = new QueryCounter();
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    // stop counting on the current thread, the counter keeps its counts
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    // counter of the current thread, null when nothing is counted
+    static QueryCounter current() {
+        return CURRENT.get();
+    }
+
+    // limit the statements and rows of the endpoint, when enforced the statement or row over the budget fails
+    public void limit(String endpoint, int statementBudget, long rowBudget, boolean enforced) {
+        this.endpoint = endpoint;
+        this.statementBudget = statementBudget;
+        this.rowBudget = rowBudget;
+        this.enforced = enforced;
+    }
+
+    void statementExecuted() {
+        statements++;
+        if (enforced && statementBudget != UNLIMITED && statements > statementBudget) {
+            throw new QueryBudgetExceededException(endpoint, statementBudget + " SQL statements");
+        }
+    }
+
+    void rowsProcessed(long count) {
+        rows += count;
+        if (enforced && rowBudget != UNLIMITED && rows > rowBudget) {
+            throw new QueryBudgetExceededException(endpoint, rowBudget + " rows");
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getStatementBudget() {
+        return statementBudget;
+    }
+
+    public long getRowBudget() {
+        return rowBudget;
+    }
+
+    public boolean isOverBudget() {
+        return statementBudget != UNLIMITED && statements > statementBudget
+                || rowBudget != UNLIMITED && rows > rowBudget;
+    }
+}
@@ -0,0 +1,104 @@
+package kmdb.movies_api.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// counts statements and rows into the QueryCounter of the calling thread, connections of threads without one are not counted
+// a batch is one statement, its rows are the rows it changed; rows of a query are the rows the caller reads
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    public QueryCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, super.getConnection(), QueryCountingDataSource::connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, super.getConnection(username, password), QueryCountingDataSource::connection);
+    }
+
+    // statements created by the connection are counted
+    private static Object connection(Object target, Method method, Object result) {
+        if (result instanceof Statement statement) {
+            return proxy(method.getReturnType(), statement, QueryCountingDataSource::statement);
+        }
+        return result;
+    }
+
+    private static Object statement(Object target, Method method, Object result) {
+        QueryCounter counter = QueryCounter.current();
+        if (counter == null) {
+            return result;
+        }
+        switch (method.getName()) {
+            case "executeUpdate", "executeLargeUpdate" -> counter.rowsProcessed(((Number) result).longValue());
+            case "executeBatch" -> counter.rowsProcessed(changedRows((int[]) result));
+            case "executeLargeBatch" -> counter.rowsProcessed(changedRows((long[]) result));
+        }
+        if (result instanceof ResultSet resultSet) {
+            return proxy(ResultSet.class, resultSet, QueryCountingDataSource::resultSet);
+        }
+        return result;
+    }
+
+    private static Object resultSet(Object target, Method method, Object result) {
+        QueryCounter counter = QueryCounter.current();
+        if (counter != null && method.getName().equals("next") && (Boolean) result) {
+            counter.rowsProcessed(1);
+        }
+        return result;
+    }
+
+    // negative counts are SUCCESS_NO_INFO and EXECUTE_FAILED
+    private static long changedRows(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+
+    private static long changedRows(long[] counts) {
+        long rows = 0;
+        for (long count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+
+    // what happens with the result of a call on a proxied JDBC object
+    private interface ResultHandler {
+        Object handle(Object target, Method method, Object result) throws SQLException;
+    }
+
+    // executions are counted before they run, so an enforced budget stops the statement over it
+    private static <T> T proxy(Class<T> type, Object target, ResultHandler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute") && target instanceof Statement) {
+                QueryCounter counter = QueryCounter.current();
+                if (counter != null) {
+                    counter.statementExecuted();
+                }
+            }
+            try {
+                return handler.handle(target, method, method.invoke(target, args));
+            } catch (InvocationTargetException exception) {
+                throw exception.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), new Class<?>[] { type }, invocationHandler));
+    }
+}
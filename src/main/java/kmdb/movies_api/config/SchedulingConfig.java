@@ -0,0 +1,10 @@
+package kmdb.movies_api.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// background jobs such as the counter reconciliation run on Spring's task scheduler
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,44 @@
+package kmdb.movies_api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import kmdb.movies_api.dto.PoolStats;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.io.Closeable;
+import java.util.List;
+
+// routes read-only transactions to a pool of read-only connections and everything else to a single writer connection
+// SQLite only allows one writer at a time, so a bigger writer pool would just wait on the database lock
+public class SqliteConnectionPool extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final HikariDataSource writer;
+    private final HikariDataSource readers;
+
+    public SqliteConnectionPool(HikariDataSource writer, HikariDataSource readers) {
+        super(writer);
+        setReadOnlyDataSource(readers);
+        this.writer = writer;
+        this.readers = readers;
+    }
+
+    // current state of the writer and reader pools
+    public List<PoolStats> getStats() {
+        return List.of(statsOf(writer), statsOf(readers));
+    }
+
+    private static PoolStats statsOf(HikariDataSource pool) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean == null) { // pool has not been started yet
+            return new PoolStats(pool.getPoolName(), pool.getMaximumPoolSize(), 0, 0, 0, 0);
+        }
+        return new PoolStats(pool.getPoolName(), pool.getMaximumPoolSize(), bean.getTotalConnections(),
+                bean.getActiveConnections(), bean.getIdleConnections(), bean.getThreadsAwaitingConnection());
+    }
+
+    @Override
+    public void close() {
+        readers.close();
+        writer.close();
+    }
+}
@@ -0,0 +1,72 @@
+package kmdb.movies_api.config;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.hibernate.exception.spi.SQLExceptionConversionDelegate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+import java.sql.SQLException;
+
+// the community SQLite dialect does not recognize constraint failures, so Spring reported them as a generic
+// JpaSystemException. Mapped here to ConstraintViolationException, which Spring turns into DataIntegrityViolationException
+// failures of a unique index carry the kind UNIQUE and the indexed column as the constraint name, e.g. movie.title
+public class SqliteDialect extends org.hibernate.community.dialect.SQLiteDialect {
+
+    private static final int SQLITE_CONSTRAINT = 19;
+    private static final String UNIQUE_FAILED = "UNIQUE constraint failed: ";
+
+    @Override
+    public SQLExceptionConversionDelegate buildSQLExceptionConversionDelegate() {
+        SQLExceptionConversionDelegate delegate = super.buildSQLExceptionConversionDelegate();
+        return (sqlException, message, sql) -> {
+            if (!isConstraintFailure(sqlException)) {
+                return delegate.convert(sqlException, message, sql);
+            }
+            String uniqueColumn = uniqueColumn(sqlException);
+            return uniqueColumn != null
+                    ? new ConstraintViolationException(message, sqlException, sql, ConstraintKind.UNIQUE, uniqueColumn)
+                    : new ConstraintViolationException(message, sqlException, sql, ConstraintKind.OTHER, null);
+        };
+    }
+
+    // true when a unique index on the column, e.g. movie.title, rejected the write
+    // NOT NULL, CHECK, foreign key and primary key failures are not duplicates of an existing name
+    public static boolean isUniqueViolation(DataIntegrityViolationException exception, String column) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getKind() == ConstraintKind.UNIQUE && column.equals(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+
+    // batched statements fail with a BatchUpdateException that carries the driver's exception as its cause
+    // the low byte of the error code is the primary result code, extended codes like SQLITE_CONSTRAINT_UNIQUE share it
+    private static boolean isConstraintFailure(SQLException sqlException) {
+        for (Throwable cause = sqlException; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException exception && (exception.getErrorCode() & 0xFF) == SQLITE_CONSTRAINT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the error code only holds the primary result code, the driver reports the extended one separately
+    // SQLite names the table and column of a unique index in the message: "UNIQUE constraint failed: movie.title"
+    private static String uniqueColumn(SQLException sqlException) {
+        for (Throwable cause = sqlException; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLiteException exception && exception.getResultCode() == SQLiteErrorCode.SQLITE_CONSTRAINT_UNIQUE) {
+                String message = exception.getMessage();
+                int start = message.indexOf(UNIQUE_FAILED);
+                if (start < 0) {
+                    return null;
+                }
+                int end = message.indexOf(')', start);
+                return message.substring(start + UNIQUE_FAILED.length(), end < 0 ? message.length() : end);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+package kmdb.movies_api.config;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// runs before migration V3, which adds unique indexes on movie titles and actor and genre names
+// databases from before V3 may hold duplicates, the index would then fail with a bare SQLite error
+// instead the migration stops with the list of duplicated values, see the upgrade notes in the README
+class UniqueNamesCheck implements Callback {
+
+    private static final MigrationVersion UNIQUE_INDEXES = MigrationVersion.fromVersion("3");
+    private static final List<String> COLUMNS = List.of("movie.title", "actor.name", "genre.name");
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_EACH_MIGRATE && UNIQUE_INDEXES.equals(context.getMigrationInfo().getVersion());
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        List<String> duplicates = new ArrayList<>();
+        try (Statement statement = context.getConnection().createStatement()) {
+            for (String column : COLUMNS) {
+                String[] tableAndColumn = column.split("\\.");
+                try (ResultSet rows = statement.executeQuery("SELECT " + tableAndColumn[1] + ", count(*) FROM " + tableAndColumn[0]
+                        + " GROUP BY " + tableAndColumn[1] + " HAVING count(*) > 1 ORDER BY " + tableAndColumn[1])) {
+                    while (rows.next()) {
+                        duplicates.add(column + " '" + rows.getString(1) + "' (" + rows.getLong(2) + " rows)");
+                    }
+                }
+            }
+        } catch (SQLException exception) {
+            throw new FlywayException("Cannot check for duplicate titles and names before migration V3", exception);
+        }
+
+        if (!duplicates.isEmpty()) {
+            throw new FlywayException("Migration V3 adds unique indexes, but these titles and names are used more than once: "
+                    + String.join(", ", duplicates) + ". Rename or delete the duplicates, then start the application again");
+        }
+    }
+
+    @Override
+    public String getCallbackName() {
+        return "uniqueNamesCheck";
+    }
+}
@@ -4,14 +4,23 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Positive;
+import kmdb.movies_api.dto.CursorPage;
+import kmdb.movies_api.dto.EntityVersion;
 import kmdb.movies_api.services.ActorService;
 import kmdb.movies_api.entities.Actor;
+import kmdb.movies_api.dto.ImportReport;
+import kmdb.movies_api.services.ImportService;
+import kmdb.movies_api.services.ExportService;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +31,8 @@ import java.util.Optional;
 public class ActorController {
 
     private final ActorService actorService;
+    private final ImportService importService;
+    private final ExportService exportService;
 
     // get all actors
     @GetMapping
@@ -40,6 +51,7 @@ public class ActorController {
     // get actors by page and page size
     @GetMapping(params = { "page", "size"}) // retrieve by page
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 1)
     public Optional<List<Actor>> getActorsByPage(
             @Min(value = 0, message = "Page index must not be less than zero")
             @RequestParam(value = "page", defaultValue = "0", required = false) int page,
@@ -50,17 +62,36 @@ public class ActorController {
         return actorService.getActorsByPage(page, size);
     }
 
-    // get actors by id
+    // get actors after a cursor, the response carries the cursor of the next slice
+    // /api/actors?after={cursor}&size={size}
+    @GetMapping(params = "after")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 1)
+    public Optional<CursorPage<Actor>> getActorsAfter(
+            @RequestParam(value = "after", defaultValue = "", required = false) String after,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size) {
+        return actorService.getActorsAfter(after, size);
+    }
+
+    // get actors by id, 304 if If-None-Match names the current version
     @GetMapping(path = "{actorId}") // retrieve data one by one using id as parameter
     @ResponseStatus(HttpStatus.OK)
-    public Optional<Actor> getActorsById(
-            @PathVariable @Positive(message = "Actor ID must be greater than 0") Long actorId) {
-        return actorService.getActorById(actorId);
+    @QueryBudget(statements = 1)
+    public ResponseEntity<Actor> getActorsById(
+            @PathVariable @Positive(message = "Actor ID must be greater than 0") Long actorId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Actor actor = actorService.getActorById(actorId).orElseThrow(); // cached, and it carries its own version
+        return ConditionalResponses.of(ifNoneMatch, new EntityVersion(actor.getVersion(), actor.getUpdatedAt()),
+                () -> Optional.of(actor));
     }
 
     //retrieve data by name or retrieve all if a parameter isn't given
     @GetMapping(path = "/search")
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 1)
     public Optional<List<Actor>> findActorsByName(@RequestParam(required = false) String name) {
         return actorService.findActorsByName(name);
     }
@@ -72,9 +103,29 @@ public class ActorController {
         return actorService.addActor(actor);
     }
 
+    // export all actors as NDJSON or CSV, written while they are read so the response never has to fit in memory
+    // /api/actors/export?format={ndjson|csv}
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> exportActors(
+            @RequestParam(value = "format", defaultValue = "ndjson", required = false) String format) {
+        ExportService.Format exportFormat = ExportService.Format.of(format);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(out -> exportService.exportActors(exportFormat, out));
+    }
+
+    // bulk import actors from an NDJSON stream or a JSON array, responds with a per-row error report
+    @PostMapping(path = "/import", consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = QueryBudget.UNLIMITED)
+    public ImportReport importActors(InputStream body) {
+        return importService.importActors(body);
+    }
+
     // delete data by id. Also include force parameter in case relationships exist
     @DeleteMapping(path = "{actorId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
+    @QueryBudget(statements = 5)
     public void deleteActor(
             @PathVariable("actorId") @Positive(message = "Movie ID must be greater than 0") Long actorId,
             @RequestParam(value = "force", defaultValue = "false", required = false) boolean force) {
@@ -86,8 +137,9 @@ public class ActorController {
     @ResponseStatus(HttpStatus.OK)
     public void updateActor(
             @PathVariable("actorId") @Positive(message = "Movie ID must be greater than 0") Long actorId,
-            @RequestBody Actor request) { // modifying via body
-        actorService.updateActor(actorId, request.getName(), request.getBirthDate());
+            @RequestBody Actor request, // modifying via body
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) { // 412 if the actor changed since
+        actorService.updateActor(actorId, request.getName(), request.getBirthDate(), ifMatch);
         }
     }
 
@@ -0,0 +1,35 @@
+package kmdb.movies_api.controllers;
+
+import kmdb.movies_api.dto.EntityVersion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// conditional GET for single resources, tagged with the version of the entity they come from
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    // 304 without loading the body when If-None-Match lists the current version, otherwise the body with ETag and
+    // Last-Modified. The version is read first, so a change made in between tags the newer body with the older
+    // version and the client only fetches it again. Spring answers If-Modified-Since from the Last-Modified header
+    static <T> ResponseEntity<T> of(String ifNoneMatch, EntityVersion version, Supplier<Optional<T>> body) {
+        if (ifNoneMatch != null && version.matches(ifNoneMatch, false)) {
+            return headers(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version).build();
+        }
+        return headers(ResponseEntity.ok(), version).body(body.get().orElseThrow());
+    }
+
+    // clients may keep the response but have to revalidate it before reuse
+    private static ResponseEntity.BodyBuilder headers(ResponseEntity.BodyBuilder builder, EntityVersion version) {
+        builder.eTag(version.eTag()).cacheControl(CacheControl.noCache());
+        if (version.updatedAt() != null) {
+            builder.lastModified(version.updatedAt());
+        }
+        return builder;
+    }
+}
@@ -4,14 +4,23 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Positive;
+import kmdb.movies_api.dto.CursorPage;
+import kmdb.movies_api.dto.EntityVersion;
 import kmdb.movies_api.entities.Genre;
 import kmdb.movies_api.services.GenreService;
+import kmdb.movies_api.dto.ImportReport;
+import kmdb.movies_api.services.ImportService;
+import kmdb.movies_api.services.ExportService;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +31,8 @@ import java.util.Optional;
 public class GenreController {
 
     private final GenreService genreService;
+    private final ImportService importService;
+    private final ExportService exportService;
 
     // get all genres
     @GetMapping
@@ -40,6 +51,7 @@ public class GenreController {
     // retrieve data by page and page size
     @GetMapping(params = { "page", "size"})
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 1)
     public Optional<List<Genre>> getGenresByPage(
             @Min(value = 0, message = "Page index must not be less than zero")
             @RequestParam(value = "page", defaultValue = "0", required = false) int page,
@@ -50,17 +62,36 @@ public class GenreController {
         return genreService.getGenresByPage(page, size);
     }
 
-    // retrieve data one by one using id as parameter
+    // get genres after a cursor, the response carries the cursor of the next slice
+    // /api/genres?after={cursor}&size={size}
+    @GetMapping(params = "after")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 1)
+    public Optional<CursorPage<Genre>> getGenresAfter(
+            @RequestParam(value = "after", defaultValue = "", required = false) String after,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size) {
+        return genreService.getGenresAfter(after, size);
+    }
+
+    // retrieve data one by one using id as parameter, 304 if If-None-Match names the current version
     @GetMapping(path = "{genreId}")
     @ResponseStatus(HttpStatus.OK)
-    public Optional<Genre> getGenreById(
-            @PathVariable @Positive(message = "Genre ID must be greater than 0") Long genreId) {
-        return genreService.getGenreById(genreId);
+    @QueryBudget(statements = 1)
+    public ResponseEntity<Genre> getGenreById(
+            @PathVariable @Positive(message = "Genre ID must be greater than 0") Long genreId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Genre genre = genreService.getGenreById(genreId).orElseThrow(); // cached, and it carries its own version
+        return ConditionalResponses.of(ifNoneMatch, new EntityVersion(genre.getVersion(), genre.getUpdatedAt()),
+                () -> Optional.of(genre));
     }
 
     //retrieve data by name or retrieve all if a parameter isn't given
     @GetMapping(path = "/search")
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 1)
     public Optional<List<Genre>> findGenresByName(@RequestParam(required = false) String name) {
         return genreService.findGenresByName(name);
     }
@@ -71,9 +102,29 @@ public class GenreController {
         return genreService.addGenre(genre);
     }
 
+    // export all genres as NDJSON or CSV, written while they are read so the response never has to fit in memory
+    // /api/genres/export?format={ndjson|csv}
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> exportGenres(
+            @RequestParam(value = "format", defaultValue = "ndjson", required = false) String format) {
+        ExportService.Format exportFormat = ExportService.Format.of(format);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(out -> exportService.exportGenres(exportFormat, out));
+    }
+
+    // bulk import genres from an NDJSON stream or a JSON array, responds with a per-row error report
+    @PostMapping(path = "/import", consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = QueryBudget.UNLIMITED)
+    public ImportReport importGenres(InputStream body) {
+        return importService.importGenres(body);
+    }
+
     // delete data by id
     @DeleteMapping(path = "{genreId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
+    @QueryBudget(statements = 5)
     public void deleteGenre(
             @PathVariable("genreId") @Positive(message = "Genre ID must be greater than 0") Long genreId,
             @RequestParam(value = "force", defaultValue = "false", required = false) boolean force) {
@@ -85,7 +136,8 @@ public class GenreController {
     @ResponseStatus(HttpStatus.OK)
     public void updateGenre(
             @PathVariable("genreId") @Positive(message = "Genre ID must be greater than 0") Long genreId,
-            @Valid @RequestBody Genre request) {
-        genreService.updateGenre(genreId, request.getName());
+            @Valid @RequestBody Genre request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) { // 412 if the genre changed since
+        genreService.updateGenre(genreId, request.getName(), ifMatch);
     }
 }
@@ -4,18 +4,34 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import kmdb.movies_api.dto.CursorPage;
+import kmdb.movies_api.dto.MovieSearchResult;
+import kmdb.movies_api.dto.MovieSummary;
 import kmdb.movies_api.entities.Actor;
 import kmdb.movies_api.entities.Movie;
 import kmdb.movies_api.services.MovieService;
 import kmdb.movies_api.services.ActorService;
 import kmdb.movies_api.entities.Genre;
 import kmdb.movies_api.services.GenreService;
+import kmdb.movies_api.dto.ImportReport;
+import kmdb.movies_api.services.ImportService;
+import kmdb.movies_api.services.ExportService;
+import kmdb.movies_api.services.MovieFilter;
+import kmdb.movies_api.services.MovieSearchService;
+import kmdb.movies_api.services.MovieRelationService;
+import kmdb.movies_api.dto.RelationChanges;
+import kmdb.movies_api.dto.RelationReport;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -29,10 +45,15 @@ public class MovieController {
     private final MovieService movieService;
     private final ActorService actorService;
     private final GenreService genreService;
+    private final ImportService importService;
+    private final ExportService exportService;
+    private final MovieSearchService movieSearchService;
+    private final MovieRelationService movieRelationService;
 
     // get all movies
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = QueryBudget.UNLIMITED)
     public Optional<List<Movie>> getAllMovies() {
         return movieService.getAllMovies();
     }
@@ -44,9 +65,32 @@ public class MovieController {
         return movieService.getMovieCount();
     }
 
+    // get number of movies in a genre
+    // /api/movies?count&genre={Genre.id}
+    @GetMapping(params = { "count", "genre" })
+    @ResponseStatus(HttpStatus.OK)
+    public String getMovieCountByGenre(
+            @RequestParam(value = "genre")
+            @Positive(message = "Genre ID must be greater than 0") Long genreId) {
+        return movieService.getMovieCountByGenre(genreId);
+    }
+
+    // get number of movies released in a year
+    // /api/movies?count&releaseYear={year}
+    @GetMapping(params = { "count", "releaseYear" })
+    @ResponseStatus(HttpStatus.OK)
+    public String getMovieCountByReleaseYear(
+            @RequestParam(value = "releaseYear")
+            @Min(value = 0, message = "Movie release year must be between 0 and 2300")
+            @Max(value = 2300, message = "Movie release year must be between 0 and 2300")
+            int releaseYear) {
+        return movieService.getMovieCountByReleaseYear(releaseYear);
+    }
+
     // get movies by page and page size
-    @GetMapping(params = { "page", "size"})
+    @GetMapping(params = { "page", "size", "!releaseYearFrom", "!releaseYearTo", "!genre", "!actor" })
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 3)
     public Optional<List<Movie>> getMoviesByPage(
             @Min(value = 0, message = "Page index must not be less than zero")
             @RequestParam(value = "page", defaultValue = "0", required = false) int page,
@@ -57,9 +101,44 @@ public class MovieController {
         return movieService.getMoviesByPage(page, size);
     }
 
+    // get compact movie summaries with genre and actor names, all or by page and optionally of one genre
+    // /api/movies/summaries?genre={Genre.id}&page={page}&size={size}&fields=title,genres
+    @GetMapping(path = "/summaries")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 2)
+    public Optional<List<MovieSummary>> getMovieSummaries(
+            @RequestParam(value = "genre", required = false)
+            @Positive(message = "Genre ID must be greater than 0") Long genreId,
+
+            @Min(value = 0, message = "Page index must not be less than zero")
+            @RequestParam(value = "page", required = false) Integer page,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size,
+
+            @RequestParam(value = "fields", required = false) Set<String> fields) {
+        return movieService.getMovieSummaries(genreId, page, size, fields);
+    }
+
+    // get movies after a cursor, the response carries the cursor of the next slice
+    // /api/movies?after={cursor}&size={size}
+    @GetMapping(params = "after")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 3)
+    public Optional<CursorPage<Movie>> getMoviesAfter(
+            @RequestParam(value = "after", defaultValue = "", required = false) String after,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size) {
+        return movieService.getMoviesAfter(after, size);
+    }
+
     // get movie by release year
     @GetMapping(params = "releaseYear")
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = QueryBudget.UNLIMITED)
     public Optional<List<Movie>> getMoviesByReleaseYear(
             @RequestParam(value = "releaseYear", defaultValue = "", required = false)
             @Min(value = 0, message = "Movie release year must be between 0 and 2300")
@@ -68,64 +147,197 @@ public class MovieController {
         return movieService.getMoviesByReleaseYear(releaseYear);
     }
 
+    // get movies released in a range of years by page and page size, either bound may be left out for an open range
+    // /api/movies?releaseYearFrom={year}&releaseYearTo={year}&page={page}&size={size}
+    @GetMapping(params = "releaseYearFrom")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 3)
+    public Optional<List<Movie>> getMoviesByReleaseYearRange(
+            @RequestParam(value = "releaseYearFrom")
+            @Min(value = 0, message = "Movie release year must be between 0 and 2300")
+            @Max(value = 2300, message = "Movie release year must be between 0 and 2300")
+            int releaseYearFrom,
+
+            @RequestParam(value = "releaseYearTo", defaultValue = "2300", required = false)
+            @Min(value = 0, message = "Movie release year must be between 0 and 2300")
+            @Max(value = 2300, message = "Movie release year must be between 0 and 2300")
+            int releaseYearTo,
+
+            @Min(value = 0, message = "Page index must not be less than zero")
+            @RequestParam(value = "page", defaultValue = "0", required = false) int page,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size) {
+        return movieService.getMoviesByReleaseYearRange(releaseYearFrom, releaseYearTo, page, size);
+    }
+
+    // get movies released up to a year by page and page size
+    // /api/movies?releaseYearTo={year}&page={page}&size={size}
+    @GetMapping(params = { "releaseYearTo", "!releaseYearFrom" })
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 3)
+    public Optional<List<Movie>> getMoviesReleasedUntil(
+            @RequestParam(value = "releaseYearTo")
+            @Min(value = 0, message = "Movie release year must be between 0 and 2300")
+            @Max(value = 2300, message = "Movie release year must be between 0 and 2300")
+            int releaseYearTo,
+
+            @Min(value = 0, message = "Page index must not be less than zero")
+            @RequestParam(value = "page", defaultValue = "0", required = false) int page,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size) {
+        return movieService.getMoviesByReleaseYearRange(0, releaseYearTo, page, size);
+    }
+
     // get data one by one using id as parameter
+    // 304 if If-None-Match names the current version, answered without loading the movie or its relations
     @GetMapping(path = "{movieId}")
     @ResponseStatus(HttpStatus.OK)
-    public Optional<Movie> getMovieById(
-            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId) {
-        return movieService.getMovieById(movieId);
+    @QueryBudget(statements = 4)
+    public ResponseEntity<Movie> getMovieById(
+            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.of(ifNoneMatch, movieService.getMovieVersion(movieId),
+                () -> movieService.getMovieById(movieId));
     }
 
     // get movies by name or get all if a parameter isn't given
     @GetMapping(path = "/search")
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = QueryBudget.UNLIMITED)
     public Optional<List<Movie>> findMoviesByTitle(@RequestParam(required = false) String title) {
         return movieService.findMoviesByTitle(title);
     }
 
-    // get movies by genre
+    // get movies matching any combination of filters, sorted and cursor paginated, with genre and decade counts
+    // /api/movies/query?title={title}&genre={Genre.id},{Genre.id}&actor={Actor.id}&releaseYearFrom={year}&releaseYearTo={year}
+    //     &durationFrom={minutes}&durationTo={minutes}&sort=releaseYear,desc&after={cursor}&size={size}
+    @GetMapping(path = "/query")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 4)
+    public Optional<MovieSearchResult> searchMovies(
+            @RequestParam(value = "title", required = false) String title,
+            @RequestParam(value = "genre", required = false) List<@Positive(message = "Genre ID must be greater than 0") Long> genreIds,
+            @RequestParam(value = "actor", required = false) List<@Positive(message = "Actor ID must be greater than 0") Long> actorIds,
+
+            @RequestParam(value = "releaseYearFrom", required = false)
+            @Min(value = 0, message = "Movie release year must be between 0 and 2300")
+            @Max(value = 2300, message = "Movie release year must be between 0 and 2300")
+            Integer releaseYearFrom,
+
+            @RequestParam(value = "releaseYearTo", required = false)
+            @Min(value = 0, message = "Movie release year must be between 0 and 2300")
+            @Max(value = 2300, message = "Movie release year must be between 0 and 2300")
+            Integer releaseYearTo,
+
+            @RequestParam(value = "durationFrom", required = false)
+            @Min(value = 0, message = "Movie duration must not be negative") Integer durationFrom,
+
+            @RequestParam(value = "durationTo", required = false)
+            @Min(value = 0, message = "Movie duration must not be negative") Integer durationTo,
+
+            @RequestParam(value = "sort", defaultValue = "id", required = false) String sort,
+            @RequestParam(value = "after", required = false) String after,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size) {
+        MovieFilter filter = new MovieFilter(title, genreIds, actorIds, releaseYearFrom, releaseYearTo, durationFrom, durationTo);
+        return movieSearchService.searchMovies(filter, sort, after, size);
+    }
+
+    // get movies by genre, all or by page, sorted by id, title, releaseYear or duration
+    // /api/movies?genre={Genre.id}&page={page}&size={size}&sort=title,desc
     @GetMapping(params = "genre")
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 3, pagedBy = "page")
     public Optional<List<Movie>> getMoviesByGenre(
             @RequestParam(value = "genre", defaultValue = "", required = false)
-            @Positive(message = "Genre ID must be greater than 0") Long genreId) {
-        return genreService.getMoviesByGenre(genreId);
+            @Positive(message = "Genre ID must be greater than 0") Long genreId,
+
+            @Min(value = 0, message = "Page index must not be less than zero")
+            @RequestParam(value = "page", required = false) Integer page,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size,
+
+            @RequestParam(value = "sort", defaultValue = "id", required = false) String sort) {
+        return genreService.getMoviesByGenre(genreId, page, size, sort);
     }
 
-    // get movies by actor
-    // /api/movies?actor={Actor.id}
+    // get movies by actor, all or by page, sorted by id, title, releaseYear or duration
+    // /api/movies?actor={Actor.id}&page={page}&size={size}&sort=title,desc
     @GetMapping(params = "actor")
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 3, pagedBy = "page")
     public Optional<List<Movie>> getMoviesByActor(
             @RequestParam(value = "actor", defaultValue = "", required = false)
-            @Positive(message = "Actor ID must be greater than 0") Long actorId)
-    {
-        return actorService.getMoviesByActor(actorId);
+            @Positive(message = "Actor ID must be greater than 0") Long actorId,
+
+            @Min(value = 0, message = "Page index must not be less than zero")
+            @RequestParam(value = "page", required = false) Integer page,
+
+            @Min(value = 1, message = "Page size must not be less than one")
+            @Max(value = 100, message = "Page size limit is 100")
+            @RequestParam(value = "size", defaultValue = "10", required = false) int size,
+
+            @RequestParam(value = "sort", defaultValue = "id", required = false) String sort) {
+        return actorService.getMoviesByActor(actorId, page, size, sort);
     }
 
-    // get actors in a movie
+    // get actors in a movie, tagged with the version of the movie
     @GetMapping("/{movieId}/actors")
     @ResponseStatus(HttpStatus.OK)
-    public Optional<Set<Actor>> getActorsInMovie(
-            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId) {
-        return movieService.getActorsInMovie(movieId);
+    @QueryBudget(statements = 2)
+    public ResponseEntity<Set<Actor>> getActorsInMovie(
+            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.of(ifNoneMatch, movieService.getMovieVersion(movieId),
+                () -> movieService.getActorsInMovie(movieId));
     }
 
-    // get genres associated to a movie
+    // get genres associated to a movie, tagged with the version of the movie
     @GetMapping("/{movieId}/genres")
     @ResponseStatus(HttpStatus.OK)
-    public Optional<Set<Genre>> getGenresInMovie(
-            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId) {
-        return movieService.getGenresInMovie(movieId);
+    @QueryBudget(statements = 2)
+    public ResponseEntity<Set<Genre>> getGenresInMovie(
+            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.of(ifNoneMatch, movieService.getMovieVersion(movieId),
+                () -> movieService.getGenresInMovie(movieId));
     }
 
     // add movie
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
+    @QueryBudget(statements = 10)
     public ResponseEntity<String> addMovie(@Valid @RequestBody Movie movie) {
         return movieService.addMovie(movie);
     }
 
+    // export all movies as NDJSON or CSV, written while they are read so the response never has to fit in memory
+    // /api/movies/export?format={ndjson|csv}
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> exportMovies(
+            @RequestParam(value = "format", defaultValue = "ndjson", required = false) String format) {
+        ExportService.Format exportFormat = ExportService.Format.of(format);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(out -> exportService.exportMovies(exportFormat, out));
+    }
+
+    // bulk import movies from an NDJSON stream or a JSON array, responds with a per-row error report
+    @PostMapping(path = "/import", consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = QueryBudget.UNLIMITED)
+    public ImportReport importMovies(InputStream body) {
+        return importService.importMovies(body);
+    }
+
     // delete movie
     @DeleteMapping(path = "{movieId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -138,11 +350,13 @@ public class MovieController {
     // update movie
     @PatchMapping(path = "{movieId}") // modify data by id
     @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 10)
     public void updateMovie(
             @PathVariable("movieId") @Positive(message = "Movie ID must be greater than 0") Long movieId,
-            @Valid @RequestBody Movie movie) {
+            @Valid @RequestBody Movie movie,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) { // 412 if the movie changed since
         movieService.updateMovie(movieId, movie.getTitle(), movie.getReleaseYear(), movie.getDuration(),
-                movie.getGenres(), movie.getActors());
+                movie.getGenres(), movie.getActors(), ifMatch);
     }
 
     // assign genres to movies
@@ -180,4 +394,44 @@ public class MovieController {
             @PathVariable @Positive(message = "Actor ID must be greater than 0") Long actorsId) {
         movieService.removeActorFromMovie(movieId, actorsId);
     }
+
+    // add and remove many movie-genre pairs in one transaction, existing pairs are not added twice
+    // body: {"add": [{"movieId": 1, "genreId": 2}], "remove": [{"movieId": 3, "genreId": 4}]}
+    @PatchMapping("/genres")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 6)
+    public RelationReport updateMovieGenres(@Valid @RequestBody RelationChanges<RelationChanges.GenrePair> changes) {
+        return movieRelationService.updateGenres(changes);
+    }
+
+    // replace all genres of a movie, body is the list of genre ids
+    @PutMapping("/{movieId}/genres")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 6)
+    public RelationReport replaceMovieGenres(
+            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId,
+            @RequestBody @Size(max = RelationChanges.MAX_PAIRS, message = "A movie can have at most " + RelationChanges.MAX_PAIRS + " genres")
+            Set<@Positive(message = "Genre ID must be greater than 0") Long> genreIds) {
+        return movieRelationService.replaceGenres(movieId, genreIds);
+    }
+
+    // add and remove many movie-actor pairs in one transaction, existing pairs are not added twice
+    // body: {"add": [{"movieId": 1, "actorId": 2}], "remove": [{"movieId": 3, "actorId": 4}]}
+    @PatchMapping("/actors")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 6)
+    public RelationReport updateMovieActors(@Valid @RequestBody RelationChanges<RelationChanges.ActorPair> changes) {
+        return movieRelationService.updateActors(changes);
+    }
+
+    // replace the whole cast of a movie, body is the list of actor ids
+    @PutMapping("/{movieId}/actors")
+    @ResponseStatus(HttpStatus.OK)
+    @QueryBudget(statements = 6)
+    public RelationReport replaceMovieActors(
+            @PathVariable @Positive(message = "Movie ID must be greater than 0") Long movieId,
+            @RequestBody @Size(max = RelationChanges.MAX_PAIRS, message = "A movie can have at most " + RelationChanges.MAX_PAIRS + " actors")
+            Set<@Positive(message = "Actor ID must be greater than 0") Long> actorIds) {
+        return movieRelationService.replaceActors(movieId, actorIds);
+    }
 }
@@ -0,0 +1,25 @@
+package kmdb.movies_api.controllers;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// most SQL statements one request to the endpoint may run and rows it may read or change
+// overrides kmdb.query-count.default-statement-budget
+// statements that grow with the input, one per movie or per name, and collections loaded only to be counted
+// show up as requests over the budget
+// endpoints that return every matching movie have no fixed budget, batch fetching adds statements for every 100 movies
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    int UNLIMITED = -1;
+
+    int statements();
+
+    long rows() default UNLIMITED;
+
+    // request parameter that pages the result, requests without it return every match and are not limited
+    String pagedBy() default "";
+}
@@ -0,0 +1,35 @@
+package kmdb.movies_api.controllers;
+
+import kmdb.movies_api.dto.CacheStats;
+import kmdb.movies_api.dto.PoolStats;
+import kmdb.movies_api.services.StatsService;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@AllArgsConstructor
+@ConditionalOnProperty(name = "kmdb.stats.enabled", havingValue = "true", matchIfMissing = true)
+@RequestMapping(path = "api/stats")
+public class StatsController {
+
+    private final StatsService statsService;
+
+    // get connection pool statistics
+    @GetMapping(path = "/pool")
+    @ResponseStatus(HttpStatus.OK)
+    public Optional<List<PoolStats>> getPoolStats() {
+        return statsService.getPoolStats();
+    }
+
+    // get cache statistics
+    @GetMapping(path = "/cache")
+    @ResponseStatus(HttpStatus.OK)
+    public Optional<List<CacheStats>> getCacheStats() {
+        return statsService.getCacheStats();
+    }
+}
@@ -0,0 +1,5 @@
+package kmdb.movies_api.dto;
+
+// snapshot of a cache
+public record CacheStats(String cache, long size, long hits, long misses, double hitRate, long evictions) {
+}
@@ -0,0 +1,41 @@
+package kmdb.movies_api.dto;
+
+import org.springframework.data.domain.Slice;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+// one slice of a keyset (cursor) paginated listing, nextCursor is null on the last slice
+public record CursorPage<T>(List<T> content, String nextCursor) {
+
+    private static final String PREFIX = "id:";
+
+    public static <T> CursorPage<T> of(Slice<T> slice, Function<T, Long> idOf) {
+        List<T> content = slice.getContent();
+        String nextCursor = slice.hasNext() ? encode(idOf.apply(content.get(content.size() - 1))) : null;
+        return new CursorPage<>(content, nextCursor);
+    }
+
+    // cursors are opaque to clients so the seek key can change without breaking them
+    public static String encode(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // an empty cursor starts from the beginning
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor '" + cursor + "'");
+            }
+            return Long.parseLong(decoded.substring(PREFIX.length()));
+        } catch (IllegalArgumentException exception) { // also covers bad base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package kmdb.movies_api.dto;
+
+import kmdb.movies_api.exceptions.PreconditionFailedException;
+import org.springframework.http.ETag;
+
+import java.time.Instant;
+
+// version and last change time of a movie, actor or genre, served as the ETag and Last-Modified headers
+public record EntityVersion(long version, Instant updatedAt) {
+
+    public String eTag() {
+        return "\"" + version + "\"";
+    }
+
+    // true when an If-None-Match or If-Match header is "*" or lists this version
+    // If-Match needs a strong match, If-None-Match also accepts the weak form W/"version"
+    public boolean matches(String header, boolean strong) {
+        for (ETag tag : ETag.parse(header)) {
+            if (tag.isWildcard() || (tag.tag().equals(String.valueOf(version)) && !(strong && tag.weak()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // rejects a change made against an older version, a request without If-Match is not checked
+    public void checkIfMatch(String ifMatch, String resource) {
+        if (ifMatch != null && !matches(ifMatch, true)) {
+            throw new PreconditionFailedException(resource + " has been changed, its current ETag is " + eTag());
+        }
+    }
+}
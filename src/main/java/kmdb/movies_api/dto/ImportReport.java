@@ -0,0 +1,32 @@
+package kmdb.movies_api.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// result of a bulk import, rows are numbered from 1 in the order they appear in the request body
+@Getter
+public class ImportReport {
+    private int imported;
+    private int failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public record RowError(long row, String key, List<String> errors) {
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(long row, String key, List<String> rowErrors) {
+        failed++;
+        errors.add(new RowError(row, key, rowErrors));
+    }
+
+    // errors are added as they are found, which is not always in row order
+    public void sortErrors() {
+        errors.sort(Comparator.comparingLong(RowError::row));
+    }
+}
@@ -0,0 +1,15 @@
+package kmdb.movies_api.dto;
+
+import kmdb.movies_api.entities.Movie;
+
+import java.util.List;
+import java.util.Map;
+
+// one slice of a faceted movie search together with counts over all matching movies
+// total is the number of matching movies, genres and decades count them per genre and per decade of release
+public record MovieSearchResult(List<Movie> content, String nextCursor, long total,
+                                List<GenreFacet> genres, Map<Integer, Long> decades) {
+
+    public record GenreFacet(Long id, String name, long count) {
+    }
+}
@@ -0,0 +1,31 @@
+package kmdb.movies_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Set;
+
+// compact read-only view of a movie with the names of its genres and actors, fields that were not requested are left out
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MovieSummary(Long id, String title, Integer releaseYear, Integer duration,
+                           List<String> genres, List<String> actors) {
+
+    public static final List<String> FIELDS = List.of("id", "title", "releaseYear", "duration", "genres", "actors");
+
+    // unit separator, cannot appear in names typed by users
+    public static final String NAME_SEPARATOR = "\u001F";
+
+    public static MovieSummary of(MovieSummaryView view, Set<String> fields) {
+        return new MovieSummary(
+                fields.contains("id") ? view.getId() : null,
+                fields.contains("title") ? view.getTitle() : null,
+                fields.contains("releaseYear") ? view.getReleaseYear() : null,
+                fields.contains("duration") ? view.getDuration() : null,
+                fields.contains("genres") ? names(view.getGenreNames()) : null,
+                fields.contains("actors") ? names(view.getActorNames()) : null);
+    }
+
+    private static List<String> names(String aggregated) {
+        return aggregated == null ? List.of() : List.of(aggregated.split(NAME_SEPARATOR));
+    }
+}
@@ -0,0 +1,17 @@
+package kmdb.movies_api.dto;
+
+// row of the movie summary query, genre and actor names come aggregated into one string separated by MovieSummary.NAME_SEPARATOR
+public interface MovieSummaryView {
+
+    Long getId();
+
+    String getTitle();
+
+    Integer getReleaseYear();
+
+    Integer getDuration();
+
+    String getGenreNames();
+
+    String getActorNames();
+}
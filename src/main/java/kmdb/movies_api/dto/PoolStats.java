@@ -0,0 +1,6 @@
+package kmdb.movies_api.dto;
+
+// snapshot of a connection pool
+public record PoolStats(String pool, int maximumPoolSize, int totalConnections,
+                        int activeConnections, int idleConnections, int threadsAwaitingConnection) {
+}
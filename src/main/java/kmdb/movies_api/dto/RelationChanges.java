@@ -0,0 +1,61 @@
+package kmdb.movies_api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+// movie-actor or movie-genre pairs to add and remove in one request
+// each endpoint reads its own pair type, so a genreId sent to the actor endpoint is missing its actorId and rejected
+public record RelationChanges<P extends RelationChanges.Pair>(
+        @Size(max = RelationChanges.MAX_PAIRS, message = "At most " + RelationChanges.MAX_PAIRS + " pairs can be added at once")
+        List<@Valid @NotNull P> add,
+
+        @Size(max = RelationChanges.MAX_PAIRS, message = "At most " + RelationChanges.MAX_PAIRS + " pairs can be removed at once")
+        List<@Valid @NotNull P> remove) {
+
+    public static final int MAX_PAIRS = 5000;
+
+    public RelationChanges {
+        add = add == null ? List.of() : add;
+        remove = remove == null ? List.of() : remove;
+    }
+
+    public sealed interface Pair permits ActorPair, GenrePair {
+        Long movieId();
+
+        Long relatedId();
+    }
+
+    public record ActorPair(
+            @NotNull(message = "Movie ID is required")
+            @Positive(message = "Movie ID must be greater than 0")
+            Long movieId,
+
+            @NotNull(message = "Actor ID is required")
+            @Positive(message = "Actor ID must be greater than 0")
+            Long actorId) implements Pair {
+
+        @Override
+        public Long relatedId() {
+            return actorId;
+        }
+    }
+
+    public record GenrePair(
+            @NotNull(message = "Movie ID is required")
+            @Positive(message = "Movie ID must be greater than 0")
+            Long movieId,
+
+            @NotNull(message = "Genre ID is required")
+            @Positive(message = "Genre ID must be greater than 0")
+            Long genreId) implements Pair {
+
+        @Override
+        public Long relatedId() {
+            return genreId;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package kmdb.movies_api.dto;
+
+// result of a bulk relation change, pairs that already existed or did not exist are not counted
+public record RelationReport(int added, int removed) {
+}
@@ -6,30 +6,31 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table
+@Table(indexes = @Index(name = "uk_actor_name", columnList = "name", unique = true))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @ToString
 public class Actor {
     @Id
-    @SequenceGenerator(
-            name = "actor_sequence",
-            sequenceName = "actor_sequence",
-            allocationSize = 1
-    )
-
-    @GeneratedValue(
-            strategy = GenerationType.SEQUENCE,
-            generator = "actor_sequence"
-    )
+    @BlockSequence(name = "actor_sequence", table = "actor")
 
     private Long id;
 
     @NotBlank(message = "Name cannot be empty")
     private String name;
 
+    // incremented on every change, served as the ETag and compared with If-Match
+    @Version
+    @JsonIgnore
+    private long version;
+
+    // time of the last change, served as Last-Modified
+    @JsonIgnore
+    private Instant updatedAt;
+
     // ManyToMany mapping between movies and actors
     @JsonIgnore
     @ManyToMany(mappedBy = "actors")
@@ -45,4 +46,9 @@ public class Actor {
         this.name = name;
     }
 
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
 }
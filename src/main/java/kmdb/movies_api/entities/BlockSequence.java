@@ -0,0 +1,22 @@
+package kmdb.movies_api.entities;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+// generate ids from blocks reserved in a sequence table, the block size is set with the kmdb.id.block-size property
+@IdGeneratorType(BlockSequenceGenerator.class)
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface BlockSequence {
+
+    // one-row table that stores the start of the next free block
+    String name();
+
+    // table of the entity, its highest id is where the first block starts after a restart
+    String table();
+}
@@ -0,0 +1,87 @@
+package kmdb.movies_api.entities;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// hands out ids from blocks of kmdb.id.block-size, so the sequence table is only updated once per block
+// the block is reserved on the connection of the inserting transaction, SQLite has a single writer and a separate
+// transaction would have to wait for the one that is asking for the id
+public class BlockSequenceGenerator implements IdentifierGenerator {
+
+    private final String sequenceTable;
+    private final String entityTable;
+    private final int blockSize;
+    private final Lock lock = new ReentrantLock(); // not synchronized, so virtual threads are not pinned while waiting
+
+    private boolean seeded = false;
+    private long next = 0;
+    private long end = 0; // first id after the current block
+
+    public BlockSequenceGenerator(BlockSequence config, Member member, CustomIdGeneratorCreationContext context) {
+        this.sequenceTable = config.name();
+        this.entityTable = config.table();
+        this.blockSize = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSetting("kmdb.id.block-size", StandardConverters.INTEGER, 50);
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("kmdb.id.block-size must be at least 1");
+        }
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        lock.lock();
+        try {
+            if (next >= end) {
+                reserveBlock(session);
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // a reservation that is rolled back together with its transaction is never handed out twice:
+    // the next block always starts after the end of the last one, and after a restart after the highest stored id
+    // the sequence table and its row belong to the migrations (V1, V5), a block costs a single UPDATE ... RETURNING
+    private void reserveBlock(SharedSessionContractImplementor session) {
+        Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        String sql = "UPDATE " + sequenceTable + " SET next_val = max(next_val, ?) + ? RETURNING next_val";
+        try {
+            if (!seeded) {
+                try (Statement statement = connection.createStatement();
+                     ResultSet maxId = statement.executeQuery("SELECT coalesce(max(id), 0) FROM " + entityTable)) {
+                    maxId.next();
+                    end = maxId.getLong(1) + 1;
+                }
+                seeded = true;
+            }
+
+            try (PreparedStatement reserve = connection.prepareStatement(sql)) {
+                reserve.setLong(1, end);
+                reserve.setLong(2, blockSize);
+                try (ResultSet nextValue = reserve.executeQuery()) {
+                    if (!nextValue.next()) {
+                        throw new IllegalStateException(sequenceTable + " has no row, it is added by the V5 migration");
+                    }
+                    end = nextValue.getLong(1);
+                    next = end - blockSize;
+                }
+            }
+        } catch (SQLException exception) {
+            throw session.getJdbcServices().getSqlExceptionHelper()
+                    .convert(exception, "Could not reserve an id block from " + sequenceTable, sql);
+        }
+    }
+}
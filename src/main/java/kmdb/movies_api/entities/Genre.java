@@ -5,30 +5,32 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 
 @Entity
-@Table
+@Table(indexes = @Index(name = "uk_genre_name", columnList = "name", unique = true))
 @Setter @Getter @NoArgsConstructor @AllArgsConstructor @ToString
 public class Genre {
    @Id
-   @SequenceGenerator(
-           name = "genre_sequence",
-           sequenceName = "genre_sequence",
-           allocationSize = 1
-   )
-    @GeneratedValue(
-            strategy = GenerationType.SEQUENCE,
-            generator = "genre_sequence"
-    )
+   @BlockSequence(name = "genre_sequence", table = "genre")
 
    private Long id;
 
    @NotBlank(message = "Name cannot be empty")
    private String name;
 
+   // incremented on every change, served as the ETag and compared with If-Match
+   @Version
+   @JsonIgnore
+   private long version;
+
+   // time of the last change, served as Last-Modified
+   @JsonIgnore
+   private Instant updatedAt;
+
    // ManyToMany mapping between movies and genres
    @JsonIgnore
    @ManyToMany(mappedBy = "genres")
@@ -39,4 +41,10 @@ public class Genre {
    public Genre(String name) {
       this.name = name;
    }
+
+   @PrePersist
+   @PreUpdate
+   void touch() {
+      updatedAt = Instant.now();
+   }
 }
\ No newline at end of file
@@ -1,28 +1,24 @@
 package kmdb.movies_api.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 
 @Entity
-@Table
+@Table(indexes = {
+        @Index(name = "idx_movie_release_year", columnList = "release_year"),
+        @Index(name = "uk_movie_title", columnList = "title", unique = true)})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @ToString
 public class Movie {
     @Id
-    @SequenceGenerator(
-            name = "movie_sequence",
-            sequenceName = "movie_sequence",
-            allocationSize = 1
-    )
-
-    @GeneratedValue(
-            strategy = GenerationType.SEQUENCE,
-            generator = "movie_sequence"
-    )
+    @BlockSequence(name = "movie_sequence", table = "movie")
     private Long id;
 
     @NotBlank(message = "Title cannot be empty")
@@ -36,24 +32,38 @@ public class Movie {
     @Max(value = 1000, message = "Movie duration must be between 0 and 1000 minutes")
     private int duration;
 
-    // ManyToMany mapping between movies and actors
+    // incremented on every change, served as the ETag and compared with If-Match
+    @Version
+    @JsonIgnore
+    private long version;
+
+    // time of the last change, served as Last-Modified
+    @JsonIgnore
+    private Instant updatedAt;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // ManyToMany mapping between movies and actors
+    // lazy, list endpoints initialize it for a whole page at once through batch fetching
+    @ManyToMany
+    @BatchSize(size = 100)
     @JoinTable (
             name = "actors",
             joinColumns = @JoinColumn(name = "movie_id"),
-            inverseJoinColumns = @JoinColumn(name = "actor_id"))
+            inverseJoinColumns = @JoinColumn(name = "actor_id"),
+            indexes = @Index(name = "idx_actors_actor_id", columnList = "actor_id"))
     @Getter
+    @ToString.Exclude
     private Set<Actor> actors = new HashSet<>();
 
     // ManyToMany mapping between movies and genres
-
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
+    @BatchSize(size = 100)
     @JoinTable (
             name = "genres",
             joinColumns = @JoinColumn(name = "movie_id"),
-            inverseJoinColumns = @JoinColumn(name = "genre_id"  ))
+            inverseJoinColumns = @JoinColumn(name = "genre_id"  ),
+            indexes = @Index(name = "idx_genres_genre_id", columnList = "genre_id"))
     @Getter
+    @ToString.Exclude
     private Set<Genre> genres = new HashSet<>();
 
     public Movie(String title, int releaseYear, int duration) {
@@ -79,4 +89,11 @@ public class Movie {
     public Movie(Set<Genre> genres) {
         this.genres = genres;
     }
+
+    // runs for changes to the owned actors and genres as well, which only increment the version
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
 }
@@ -0,0 +1,25 @@
+package kmdb.movies_api.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+// read-only mapping of the movie_search full-text index so criteria queries can filter on it
+// FTS5 treats "movie_search = ?" on the column named after the table as "movie_search MATCH ?"
+@Entity
+@Immutable
+@Table(name = "movie_search")
+@Getter @NoArgsConstructor
+public class MovieSearchEntry {
+    @Id
+    @Column(name = "rowid")
+    private Long movieId;
+
+    // match expression, see FullTextQuery
+    @Column(name = "movie_search", insertable = false, updatable = false)
+    private String match;
+}
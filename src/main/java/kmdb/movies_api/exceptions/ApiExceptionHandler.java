@@ -97,8 +97,7 @@ public class ApiExceptionHandler {
    @ExceptionHandler(ResourceNotFoundException.class) // custom exception for missing resource
    @ResponseStatus(HttpStatus.NOT_FOUND)
     public ResponseEntity<ApiException> handleResourceNotFoundException(ResourceNotFoundException exception) {
-       ArrayList<String> errors = new ArrayList<>();
-       errors.add(exception.getMessage());
+       ArrayList<String> errors = new ArrayList<>(exception.getErrors()); // can hold more than one missing resource
 
        ApiException resourceNotFoundException = new ApiException(
                String.format(HttpStatus.NOT_FOUND.value() + " " + HttpStatus.NOT_FOUND.getReasonPhrase()),
@@ -121,4 +120,32 @@ public class ApiExceptionHandler {
 
         return new ResponseEntity<>(resourceAlreadyExists, HttpStatus.CONFLICT);
     }
+
+    @ExceptionHandler(PreconditionFailedException.class) // custom exception for when If-Match names an older version
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ResponseEntity<ApiException> handlePreconditionFailed(PreconditionFailedException exception) {
+        ArrayList<String> errors = new ArrayList<>();
+        errors.add(exception.getMessage());
+
+        ApiException preconditionFailed = new ApiException(
+                String.format(HttpStatus.PRECONDITION_FAILED.value() + " " + HttpStatus.PRECONDITION_FAILED.getReasonPhrase()),
+                errors
+        );
+
+        return new ResponseEntity<>(preconditionFailed, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(QueryBudgetExceededException.class) // custom exception for requests running more SQL statements than their endpoint allows
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public ResponseEntity<ApiException> handleQueryBudgetExceeded(QueryBudgetExceededException exception) {
+        ArrayList<String> errors = new ArrayList<>();
+        errors.add(exception.getMessage());
+
+        ApiException queryBudgetExceeded = new ApiException(
+                String.format(HttpStatus.INTERNAL_SERVER_ERROR.value() + " " + HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase()),
+                errors
+        );
+
+        return new ResponseEntity<>(queryBudgetExceeded, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
 }
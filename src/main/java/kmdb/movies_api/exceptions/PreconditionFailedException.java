@@ -0,0 +1,6 @@
+package kmdb.movies_api.exceptions;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {super(message);}
+}
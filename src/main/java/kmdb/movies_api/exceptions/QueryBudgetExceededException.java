@@ -0,0 +1,8 @@
+package kmdb.movies_api.exceptions;
+
+public class QueryBudgetExceededException extends RuntimeException {
+
+    public QueryBudgetExceededException(String endpoint, String budget) {
+        super(endpoint + " exceeded its budget of " + budget);
+    }
+}
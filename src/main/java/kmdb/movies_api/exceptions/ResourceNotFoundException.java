@@ -1,6 +1,22 @@
 package kmdb.movies_api.exceptions;
 
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
 public class ResourceNotFoundException extends RuntimeException {
 
-        public ResourceNotFoundException(String message) {super(message);}
+        private final List<String> errors;
+
+        public ResourceNotFoundException(String message) {
+                super(message);
+                this.errors = List.of(message);
+        }
+
+        // several missing resources reported at once
+        public ResourceNotFoundException(List<String> errors) {
+                super(String.join(", ", errors));
+                this.errors = List.copyOf(errors);
+        }
 }
\ No newline at end of file
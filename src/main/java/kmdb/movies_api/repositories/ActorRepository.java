@@ -1,12 +1,21 @@
 package kmdb.movies_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import kmdb.movies_api.entities.Actor;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface ActorRepository
@@ -17,4 +26,32 @@ public interface ActorRepository
     @Query("SELECT actor FROM Actor actor WHERE actor.name = ?1")
     Optional<Actor> findByName(String name);
 
+    // Query to find actors through the full-text index on names, best matches first
+    @Query(value = "SELECT actor.* FROM actor_search JOIN actor ON actor.id = actor_search.rowid " +
+            "WHERE actor_search MATCH ?1 ORDER BY actor_search.rank, actor.id", nativeQuery = true)
+    List<Actor> searchByName(String matchQuery);
+
+    // Query to find all actors matching any of the given names in one round trip
+    @Query("SELECT actor FROM Actor actor WHERE actor.name IN ?1")
+    List<Actor> findAllByNameIn(Collection<String> names);
+
+    // Query to find which of the given actor ids exist, one IN query for a whole batch
+    @Query("SELECT actor.id FROM Actor actor WHERE actor.id IN ?1")
+    Set<Long> findIdsIn(Collection<Long> actorIds);
+
+    // Query to read every actor in id order through a forward-only cursor, entities are loaded read-only without snapshots
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT actor FROM Actor actor ORDER BY actor.id")
+    Stream<Actor> streamAll();
+
+    // Query to find the next slice of actors after the given id (keyset pagination)
+    @Query("SELECT actor FROM Actor actor WHERE actor.id > ?1 ORDER BY actor.id")
+    Slice<Actor> findAllAfter(Long actorId, Pageable pageable);
+
+    // Query to find a page of actors without counting all of them, reads one row past the page to tell if more follow
+    Slice<Actor> findAllBy(Pageable pageable);
+
 }
@@ -1,12 +1,21 @@
 package kmdb.movies_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import kmdb.movies_api.entities.Genre;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface GenreRepository
@@ -16,4 +25,36 @@ public interface GenreRepository
     // Query to find genres by name from database
     @Query("SELECT genre FROM Genre genre WHERE genre.name = ?1")
     Optional<Genre> findByName(String name);
+
+    // Query to find genres through the full-text index on names, best matches first
+    @Query(value = "SELECT genre.* FROM genre_search JOIN genre ON genre.id = genre_search.rowid " +
+            "WHERE genre_search MATCH ?1 ORDER BY genre_search.rank, genre.id", nativeQuery = true)
+    List<Genre> searchByName(String matchQuery);
+
+    // Query to find all genres matching any of the given names in one round trip
+    @Query("SELECT genre FROM Genre genre WHERE genre.name IN ?1")
+    List<Genre> findAllByNameIn(Collection<String> names);
+
+    // Query to find which of the given genre ids exist, one IN query for a whole batch
+    @Query("SELECT genre.id FROM Genre genre WHERE genre.id IN ?1")
+    Set<Long> findIdsIn(Collection<Long> genreIds);
+
+    // Query to count the movies of every genre, genres without movies are counted as 0
+    @Query("SELECT genre.id, count(movie) FROM Genre genre LEFT JOIN genre.movies movie GROUP BY genre.id")
+    List<Object[]> countMoviesByGenre();
+
+    // Query to read every genre in id order through a forward-only cursor, entities are loaded read-only without snapshots
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT genre FROM Genre genre ORDER BY genre.id")
+    Stream<Genre> streamAll();
+
+    // Query to find the next slice of genres after the given id (keyset pagination)
+    @Query("SELECT genre FROM Genre genre WHERE genre.id > ?1 ORDER BY genre.id")
+    Slice<Genre> findAllAfter(Long genreId, Pageable pageable);
+
+    // Query to find a page of genres without counting all of them, reads one row past the page to tell if more follow
+    Slice<Genre> findAllBy(Pageable pageable);
 }
@@ -1,29 +1,165 @@
 package kmdb.movies_api.repositories;
 
-import kmdb.movies_api.entities.Actor;
-import kmdb.movies_api.entities.Genre;
+import jakarta.persistence.QueryHint;
+import kmdb.movies_api.dto.EntityVersion;
+import kmdb.movies_api.dto.MovieSummaryView;
 import kmdb.movies_api.entities.Movie;
+import org.hibernate.Hibernate;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public interface MovieRepository
     extends JpaRepository<Movie, Long>,
             JpaSpecificationExecutor<Movie> {
 
+    // Query to find a movie together with its actors only
+    @EntityGraph(attributePaths = "actors")
+    Optional<Movie> findWithActorsById(Long movieId);
+
+    // Query to find a movie together with its genres only
+    @EntityGraph(attributePaths = "genres")
+    Optional<Movie> findWithGenresById(Long movieId);
+
+    // Query to find the ids of movies an actor appears in
+    @Query("SELECT movie.id FROM Movie movie JOIN movie.actors actor WHERE actor.id = ?1")
+    List<Long> findIdsByActorId(Long actorId);
+
+    // Query to find the ids of movies in a genre
+    @Query("SELECT movie.id FROM Movie movie JOIN movie.genres genre WHERE genre.id = ?1")
+    List<Long> findIdsByGenreId(Long genreId);
+
+    // Query to find which of the given movie ids exist, one IN query for a whole batch
+    @Query("SELECT movie.id FROM Movie movie WHERE movie.id IN ?1")
+    Set<Long> findIdsIn(Collection<Long> movieIds);
+
+    // Query to count the movies an actor appears in straight from the actors join table, none of them are loaded
+    @Query(value = "SELECT count(*) FROM actors WHERE actor_id = ?1", nativeQuery = true)
+    long countAllByActorId(Long actorId);
+
+    // Query to count the movies in a genre straight from the genres join table, none of them are loaded
+    @Query(value = "SELECT count(*) FROM genres WHERE genre_id = ?1", nativeQuery = true)
+    long countAllByGenreId(Long genreId);
+
+    // Query to count the actors of a movie straight from the actors join table, none of them are loaded
+    @Query(value = "SELECT count(*) FROM actors WHERE movie_id = ?1", nativeQuery = true)
+    long countActorsByMovieId(Long movieId);
+
+    // Query to count the genres of a movie straight from the genres join table, none of them are loaded
+    @Query(value = "SELECT count(*) FROM genres WHERE movie_id = ?1", nativeQuery = true)
+    long countGenresByMovieId(Long movieId);
+
+    // Query to take an actor out of all their movies with one delete on the actors join table
+    @Modifying
+    @Query(value = "DELETE FROM actors WHERE actor_id = ?1", nativeQuery = true)
+    int removeActorFromAll(Long actorId);
+
+    // Query to take a genre out of all its movies with one delete on the genres join table
+    @Modifying
+    @Query(value = "DELETE FROM genres WHERE genre_id = ?1", nativeQuery = true)
+    int removeGenreFromAll(Long genreId);
+
+    // Query to find the version of a movie without loading it or its relations
+    @Query("SELECT new kmdb.movies_api.dto.EntityVersion(movie.version, movie.updatedAt) FROM Movie movie WHERE movie.id = ?1")
+    Optional<EntityVersion> findVersionById(Long movieId);
+
+    // Query to mark the movies of an actor as changed, their representation embeds the actor
+    @Modifying
+    @Query("UPDATE Movie movie SET movie.version = movie.version + 1, movie.updatedAt = ?2 " +
+            "WHERE movie.id IN (SELECT starring.id FROM Movie starring JOIN starring.actors actor WHERE actor.id = ?1)")
+    int touchAllByActorId(Long actorId, Instant updatedAt);
+
+    // Query to mark the movies of a genre as changed, their representation embeds the genre
+    @Modifying
+    @Query("UPDATE Movie movie SET movie.version = movie.version + 1, movie.updatedAt = ?2 " +
+            "WHERE movie.id IN (SELECT inGenre.id FROM Movie inGenre JOIN inGenre.genres genre WHERE genre.id = ?1)")
+    int touchAllByGenreId(Long genreId, Instant updatedAt);
+
+    // Query to mark movies as changed whose relations were edited straight on the join tables
+    @Modifying
+    @Query("UPDATE Movie movie SET movie.version = movie.version + 1, movie.updatedAt = ?2 WHERE movie.id IN ?1")
+    int touchAllById(Collection<Long> movieIds, Instant updatedAt);
+
     // Query to find movies by title from database
     @Query("SELECT movie FROM Movie movie WHERE movie.title = ?1")
     Optional<Movie> findByTitle(String title);
 
-    // Query to find all movies associated with a given genre
-    @Query("SELECT movie FROM Movie movie WHERE :genre MEMBER OF movie.genres")
-    Set<Movie> findAllByGenresContains(Genre genre);
+    // Query to find which of the given titles are already taken
+    @Query("SELECT movie.title FROM Movie movie WHERE movie.title IN ?1")
+    Set<String> findTitlesIn(Collection<String> titles);
+
+    // Query to find the next slice of movies after the given id (keyset pagination)
+    @Query("SELECT movie FROM Movie movie WHERE movie.id > ?1 ORDER BY movie.id")
+    Slice<Movie> findAllAfter(Long movieId, Pageable pageable);
+
+    // Query to read every movie in id order through a forward-only cursor, entities are loaded read-only without snapshots
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT movie FROM Movie movie ORDER BY movie.id")
+    Stream<Movie> streamAll();
+
+    // Query to find movie summaries, optionally only of one genre, without loading any entities
+    // genre and actor names are aggregated in SQL and only when asked for, CASE skips the subquery otherwise
+    @Query(value = "SELECT movie.id AS id, movie.title AS title, movie.release_year AS releaseYear, movie.duration AS duration, " +
+            "CASE WHEN ?2 THEN (SELECT group_concat(name, char(31)) FROM (SELECT genre.name AS name FROM genres " +
+            "JOIN genre ON genre.id = genres.genre_id WHERE genres.movie_id = movie.id ORDER BY genre.name)) END AS genreNames, " +
+            "CASE WHEN ?3 THEN (SELECT group_concat(name, char(31)) FROM (SELECT actor.name AS name FROM actors " +
+            "JOIN actor ON actor.id = actors.actor_id WHERE actors.movie_id = movie.id ORDER BY actor.name)) END AS actorNames " +
+            "FROM movie WHERE ?1 IS NULL OR movie.id IN (SELECT genres.movie_id FROM genres WHERE genres.genre_id = ?1) " +
+            "ORDER BY movie.id", nativeQuery = true)
+    List<MovieSummaryView> findSummaries(Long genreId, boolean withGenres, boolean withActors, Pageable pageable);
+
+    // Query to find movies through the full-text index on titles, best matches first
+    @Query(value = "SELECT movie.* FROM movie_search JOIN movie ON movie.id = movie_search.rowid " +
+            "WHERE movie_search MATCH ?1 ORDER BY movie_search.rank, movie.id", nativeQuery = true)
+    List<Movie> searchByTitle(String matchQuery);
+
+    // Query to count the movies of every release year, reads only the release year index
+    @Query("SELECT movie.releaseYear, count(movie) FROM Movie movie GROUP BY movie.releaseYear")
+    List<Object[]> countByReleaseYear();
+
+    // Query to find a page of movies without counting all of them, reads one row past the page to tell if more follow
+    Slice<Movie> findAllBy(Pageable pageable);
+
+    // Query to find movies by release year, uses the release year index
+    @Query("SELECT movie FROM Movie movie WHERE movie.releaseYear = ?1")
+    List<Movie> findAllByReleaseYear(int releaseYear);
+
+    // Query to find a page of movies released between two years (inclusive)
+    @Query("SELECT movie FROM Movie movie WHERE movie.releaseYear BETWEEN ?1 AND ?2 ORDER BY movie.releaseYear, movie.id")
+    Slice<Movie> findAllByReleaseYearBetween(int releaseYearFrom, int releaseYearTo, Pageable pageable);
+
+    // Query to find movies in a genre straight through the genres join table, paged and sorted by the pageable
+    @Query("SELECT movie FROM Movie movie JOIN movie.genres genre WHERE genre.id = ?1")
+    Slice<Movie> findAllByGenreId(Long genreId, Pageable pageable);
+
+    // Query to find movies an actor appears in straight through the actors join table, paged and sorted by the pageable
+    @Query("SELECT movie FROM Movie movie JOIN movie.actors actor WHERE actor.id = ?1")
+    Slice<Movie> findAllByActorId(Long actorId, Pageable pageable);
 
-    // Query to find all movies associated with a given actor
-    @Query("SELECT movie FROM Movie movie WHERE :actor MEMBER OF movie.actors")
-    Set<Movie> findAllByActorsContains(Actor actor);
+    // initialize actors and genres of already loaded movies, must run inside a transaction
+    // batch fetching loads each relation for up to 100 movies in one query instead of joining both at once
+    default <C extends Collection<Movie>> C fetchRelations(C movies) {
+        movies.forEach(movie -> {
+            Hibernate.initialize(movie.getActors());
+            Hibernate.initialize(movie.getGenres());
+        });
+        return movies;
+    }
 
 }
@@ -1,6 +1,9 @@
 package kmdb.movies_api.services;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
+import kmdb.movies_api.config.SqliteDialect;
+import kmdb.movies_api.dto.CursorPage;
+import kmdb.movies_api.dto.EntityVersion;
 import kmdb.movies_api.entities.Actor;
 import kmdb.movies_api.exceptions.ResourceAlreadyExistsException;
 import kmdb.movies_api.exceptions.ResourceNotFoundException;
@@ -8,23 +11,33 @@ import kmdb.movies_api.entities.Movie;
 import kmdb.movies_api.repositories.MovieRepository;
 import kmdb.movies_api.repositories.ActorRepository;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import static kmdb.movies_api.config.CacheConfig.*;
+
 @Service
+@Timed(value = "kmdb.service", description = "Time spent in service methods")
 @AllArgsConstructor
 public class ActorService {
 
     private final ActorRepository actorRepository;
     private final MovieRepository movieRepository;
+    private final CacheService cacheService;
+    private final CounterService counterService;
 
     // get all actors
     public Optional<List<Actor>> getAllActors() {
@@ -37,13 +50,13 @@ public class ActorService {
 
     // get number of actors
     public String getActorCount() {
-        return "Actors in database: " + actorRepository.count();
+        return "Actors in database: " + counterService.getActorCount();
     }
 
     // get all the actors or actors by page number and size
     public Optional<List<Actor>> getActorsByPage(int page, int size) {
         PageRequest pageable = PageRequest.of(page, size);
-        Page<Actor> actorsPage = actorRepository.findAll(pageable);
+        Slice<Actor> actorsPage = actorRepository.findAllBy(pageable);
         List<Actor> actorsList = actorsPage.getContent();
         if (actorsList.isEmpty()) {
             throw new ResourceNotFoundException("No actors found on page " + page);
@@ -52,7 +65,17 @@ public class ActorService {
         }
     }
 
+    // get actors after the given cursor, seeks on the id so deep pages cost the same as the first one
+    public Optional<CursorPage<Actor>> getActorsAfter(String after, int size) {
+        Slice<Actor> actorsSlice = actorRepository.findAllAfter(CursorPage.decode(after), PageRequest.ofSize(size));
+        if (actorsSlice.isEmpty()) {
+            throw new ResourceNotFoundException("No actors found after cursor '" + after + "'");
+        }
+        return Optional.of(CursorPage.of(actorsSlice, Actor::getId));
+    }
+
     // get actors by id
+    @Cacheable(cacheNames = ACTORS, key = "#actorId")
     public Optional<Actor> getActorById(Long actorId) {
         Optional<Actor> actor = actorRepository.findById(actorId);
         if (actor.isPresent()) {
@@ -73,10 +96,11 @@ public class ActorService {
         };
     }
 
-    // filter actors by name
+    // filter actors by name, ranked full-text search where each word matches the start of a word in the name
     public Optional<List<Actor>> findActorsByName(String name) {
-        Specification<Actor> spec = nameContains(name);
-        List<Actor> actorsList = actorRepository.findAll(spec);
+        List<Actor> actorsList = FullTextQuery.of(name)
+                .map(actorRepository::searchByName)
+                .orElseGet(() -> actorRepository.findAll(nameContains(name))); // no words given
 
         if (actorsList.isEmpty()) { // in case no movie matches given title
             throw new ResourceNotFoundException("Actor with name containing '" + name + "' does not exist");
@@ -85,69 +109,96 @@ public class ActorService {
         }
     }
 
-    // filter movies by actor
-    public Optional<List<Movie>> getMoviesByActor(Long actorId) {
-        Actor actor = actorRepository.findById(actorId)
-                .orElseThrow(() -> new ResourceNotFoundException("Actor with ID " + actorId + " does not exist"));
-
-        List<Movie> moviesList = new ArrayList<>(movieRepository.findAllByActorsContains(actor));
+    // filter movies by actor, all or by page, sorted by a movie field, see MovieSort
+    // the actor itself is only loaded when there are no movies, to tell a missing actor from one without movies
+    @Transactional(readOnly = true)
+    public Optional<List<Movie>> getMoviesByActor(Long actorId, Integer page, int size, String sort) {
+        Sort order = MovieSort.of(sort);
+        Pageable pageable = page == null ? Pageable.unpaged(order) : PageRequest.of(page, size, order);
+        List<Movie> moviesList = movieRepository.fetchRelations(movieRepository.findAllByActorId(actorId, pageable).getContent());
 
         if (moviesList.isEmpty()) {
+            Actor actor = actorRepository.findById(actorId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Actor with ID " + actorId + " does not exist"));
             throw new ResourceNotFoundException("No movies found starring actor '" + actor.getName() + "'");
-        } else {
-            return Optional.of(moviesList);
         }
+        return Optional.of(moviesList);
     }
 
     // add actor
-
+    @Transactional
     public ResponseEntity<String> addActor(Actor actor) {
-        Optional<Actor> actorOptional = actorRepository
-                .findByName(actor.getName());
-
-        if(actorOptional.isPresent()) {
-                    throw new ResourceAlreadyExistsException("Actor '" + actor.getName() + "' already exists");
-        } else {
-            actorRepository.save(actor);
-            return new ResponseEntity<>("Actor '" + actor.getName() + "' added successfully", HttpStatus.CREATED);
+        // the unique index on the name detects duplicates, flushed here so the conflict surfaces as a 409
+        try {
+            actorRepository.saveAndFlush(actor);
+        } catch (DataIntegrityViolationException exception) {
+            if (!SqliteDialect.isUniqueViolation(exception, "actor.name")) {
+                throw exception;
+            }
+            throw new ResourceAlreadyExistsException("Actor '" + actor.getName() + "' already exists");
         }
+        counterService.actorAdded();
+        return new ResponseEntity<>("Actor '" + actor.getName() + "' added successfully", HttpStatus.CREATED);
     }
 
     // remove actor
+    // relationships are counted and removed on the actors join table, the movies themselves are never loaded
     @Transactional
     public void deleteActor(Long actorId, boolean force) {
         Actor actor = actorRepository.findById(actorId)
                 .orElseThrow(() -> new ResourceNotFoundException("Actor with ID " + actorId + " does not exist"));
 
-        int numOfMovies = actor.getMovies().size();
-
         if (force) { // if force is true then delete resource regardless of relationships
-            actorRepository.deleteById(actorId);
-            return;
-        }
-
-        if (numOfMovies > 0) { // if force is false and relationships exist then return exception
-            if (numOfMovies == 1) {
-                throw new IllegalStateException(("Cannot delete actor '" + actor.getName() + "' because they are associated with " + numOfMovies + " movie"));
-            } else {
-                throw new IllegalStateException(("Cannot delete actor '" + actor.getName() + "' because they are associated with " + numOfMovies + " movies"));
+            cacheService.evictMovies(movieRepository.findIdsByActorId(actorId)); // movies embed their actors
+            movieRepository.touchAllByActorId(actorId, Instant.now()); // the movies no longer list the actor
+            movieRepository.removeActorFromAll(actorId);
+        } else {
+            long numOfMovies = movieRepository.countAllByActorId(actorId);
+            if (numOfMovies > 0) { // if force is false and relationships exist then return exception
+                if (numOfMovies == 1) {
+                    throw new IllegalStateException(("Cannot delete actor '" + actor.getName() + "' because they are associated with " + numOfMovies + " movie"));
+                } else {
+                    throw new IllegalStateException(("Cannot delete actor '" + actor.getName() + "' because they are associated with " + numOfMovies + " movies"));
+                }
             }
         }
-        actorRepository.deleteById(actorId); // if force is false and relationships do not exist then delete resource
+        cacheService.evict(ACTORS, actorId);
+        actorRepository.delete(actor);
+        counterService.actorRemoved();
     }
 
     // update actor
+    // an update that changes nothing keeps the version of the actor and of its movies
     @Transactional
-    public void updateActor(Long actorId, String name, String birthDate) {
+    public void updateActor(Long actorId, String name, String birthDate, String ifMatch) {
         Actor actor = actorRepository.findById(actorId)
                 .orElseThrow(() -> new ResourceNotFoundException("Actor with ID " + actorId + " does not exist"));
+        new EntityVersion(actor.getVersion(), actor.getUpdatedAt()).checkIfMatch(ifMatch, "Actor with ID " + actorId);
 
-        if (name != null && !name.isEmpty()) { // update only non-null fields
+        boolean nameChanged = name != null && !name.isEmpty() && !name.equals(actor.getName()); // update only non-null fields
+        boolean birthDateChanged = birthDate != null && !birthDate.equals(actor.getBirthDate()); // update only non-null fields
+        if (!nameChanged && !birthDateChanged) {
+            return;
+        }
+        cacheService.evict(ACTORS, actorId);
+        cacheService.evictMovies(movieRepository.findIdsByActorId(actorId)); // movies embed their actors
+
+        if (nameChanged) {
             actor.setName(name);
         }
 
-        if (birthDate != null) { // update only non-null fields
+        if (birthDateChanged) {
             actor.setBirthDate(birthDate);
         }
+
+        try {
+            actorRepository.flush();
+        } catch (DataIntegrityViolationException exception) {
+            if (!SqliteDialect.isUniqueViolation(exception, "actor.name")) {
+                throw exception;
+            }
+            throw new ResourceAlreadyExistsException("Actor '" + actor.getName() + "' already exists");
+        }
+        movieRepository.touchAllByActorId(actorId, Instant.now()); // the movies embed the actor
     }
 }
@@ -0,0 +1,62 @@
+package kmdb.movies_api.services;
+
+import lombok.AllArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+import static kmdb.movies_api.config.CacheConfig.*;
+
+@Service
+@AllArgsConstructor
+public class CacheService {
+
+    private final CacheManager cacheManager;
+
+    // evict a movie together with its actor and genre lookups and its version
+    public void evictMovie(Long movieId) {
+        evictMovies(List.of(movieId));
+    }
+
+    // evict movies that embed a changed actor or genre
+    public void evictMovies(Collection<Long> movieIds) {
+        List<Long> ids = List.copyOf(movieIds);
+        afterCommit(() -> ids.forEach(movieId -> {
+            evictNow(MOVIES, movieId);
+            evictNow(MOVIE_ACTORS, movieId);
+            evictNow(MOVIE_GENRES, movieId);
+            evictNow(MOVIE_VERSIONS, movieId);
+        }));
+    }
+
+    // evict a single entry, e.g. an actor after it was renamed
+    public void evict(String cacheName, Long key) {
+        afterCommit(() -> evictNow(cacheName, key));
+    }
+
+    // evicting before the commit would let a concurrent read cache the old row again
+    private void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private void evictNow(String cacheName, Long key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+}
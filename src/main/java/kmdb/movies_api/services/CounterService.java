@@ -0,0 +1,211 @@
+package kmdb.movies_api.services;
+
+import jakarta.annotation.PostConstruct;
+import kmdb.movies_api.entities.Genre;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// row counts kept in memory so the count endpoints never scan a table
+// seeded from the database at startup, changed by the write paths after they commit and reconciled periodically
+@Service
+public class CounterService {
+
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final GenreRepository genreRepository;
+    private final TransactionTemplate reconcileTransaction;
+
+    private final AtomicLong movies = new AtomicLong();
+    private final AtomicLong actors = new AtomicLong();
+    private final AtomicLong genres = new AtomicLong();
+    private final Map<Long, AtomicLong> moviesByGenre = new ConcurrentHashMap<>(); // has a key for every genre
+    private final Map<Integer, AtomicLong> moviesByReleaseYear = new ConcurrentHashMap<>();
+
+    public CounterService(MovieRepository movieRepository, ActorRepository actorRepository, GenreRepository genreRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+        this.genreRepository = genreRepository;
+        // not read-only on purpose: the counts are then taken on the single writer connection,
+        // so no write can commit and apply its deltas while they are being read
+        this.reconcileTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public long getMovieCount() {
+        return movies.get();
+    }
+
+    public long getActorCount() {
+        return actors.get();
+    }
+
+    public long getGenreCount() {
+        return genres.get();
+    }
+
+    // empty if the genre does not exist
+    public OptionalLong getMovieCountByGenre(Long genreId) {
+        AtomicLong count = moviesByGenre.get(genreId);
+        return count == null ? OptionalLong.empty() : OptionalLong.of(count.get());
+    }
+
+    public long getMovieCountByReleaseYear(int releaseYear) {
+        AtomicLong count = moviesByReleaseYear.get(releaseYear);
+        return count == null ? 0 : count.get();
+    }
+
+    // snapshot of the movie counts of every genre
+    public Map<Long, Long> getMovieCountsByGenre() {
+        Map<Long, Long> counts = new HashMap<>();
+        moviesByGenre.forEach((genreId, count) -> counts.put(genreId, count.get()));
+        return counts;
+    }
+
+    // snapshot of the movie counts of every release year that has movies
+    public Map<Integer, Long> getMovieCountsByReleaseYear() {
+        Map<Integer, Long> counts = new HashMap<>();
+        moviesByReleaseYear.forEach((releaseYear, count) -> {
+            if (count.get() > 0) {
+                counts.put(releaseYear, count.get());
+            }
+        });
+        return counts;
+    }
+
+    public void movieAdded(Movie movie) {
+        Set<Long> genreIds = genreIds(movie);
+        int releaseYear = movie.getReleaseYear();
+        afterCommit(() -> {
+            movies.incrementAndGet();
+            addMovies(releaseYear, genreIds, 1);
+        });
+    }
+
+    public void movieRemoved(Movie movie) {
+        movieRemoved(movie.getReleaseYear(), genreIds(movie));
+    }
+
+    // same with the genre ids given, for deletes that do not initialize the movie's genres
+    public void movieRemoved(int releaseYear, Set<Long> genreIds) {
+        afterCommit(() -> {
+            movies.decrementAndGet();
+            addMovies(releaseYear, genreIds, -1);
+        });
+    }
+
+    // release year or genres of a movie changed, the arguments are the values before the change
+    public void movieChanged(int oldReleaseYear, Set<Long> oldGenreIds, Movie movie) {
+        movieChanged(oldReleaseYear, oldGenreIds, movie.getReleaseYear(), genreIds(movie));
+    }
+
+    // same with the new genre ids given, for writes that change the genres without initializing the movie's set
+    public void movieChanged(int oldReleaseYear, Set<Long> oldGenreIds, int releaseYear, Set<Long> genreIds) {
+        afterCommit(() -> {
+            addMovies(oldReleaseYear, oldGenreIds, -1);
+            addMovies(releaseYear, genreIds, 1);
+        });
+    }
+
+    // genres were assigned to or taken from movies without loading them, deltas are the change in movies per genre
+    public void genreMoviesChanged(Map<Long, Long> deltas) {
+        Map<Long, Long> changes = Map.copyOf(deltas);
+        afterCommit(() -> changes.forEach((genreId, delta) -> {
+            AtomicLong count = moviesByGenre.get(genreId);
+            if (count != null) { // the genre may have been deleted in the meantime
+                count.addAndGet(delta);
+            }
+        }));
+    }
+
+    public void actorAdded() {
+        afterCommit(actors::incrementAndGet);
+    }
+
+    public void actorRemoved() {
+        afterCommit(actors::decrementAndGet);
+    }
+
+    public void genreAdded(Long genreId) {
+        afterCommit(() -> {
+            genres.incrementAndGet();
+            moviesByGenre.putIfAbsent(genreId, new AtomicLong());
+        });
+    }
+
+    public void genreRemoved(Long genreId) {
+        afterCommit(() -> {
+            genres.decrementAndGet();
+            moviesByGenre.remove(genreId);
+        });
+    }
+
+    public static Set<Long> genreIds(Movie movie) {
+        Set<Long> genreIds = new HashSet<>();
+        for (Genre genre : movie.getGenres()) {
+            genreIds.add(genre.getId());
+        }
+        return genreIds;
+    }
+
+    // replace the counters with fresh counts from the database, corrects any drift
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${kmdb.counters.reconcile-interval:PT5M}",
+            initialDelayString = "${kmdb.counters.reconcile-interval:PT5M}")
+    public void reconcile() {
+        reconcileTransaction.executeWithoutResult(status -> {
+            movies.set(movieRepository.count());
+            actors.set(actorRepository.count());
+            genres.set(genreRepository.count());
+
+            Map<Long, Long> genreCounts = new HashMap<>();
+            genreRepository.countMoviesByGenre().forEach(row -> genreCounts.put((Long) row[0], (Long) row[1]));
+            replace(moviesByGenre, genreCounts);
+
+            Map<Integer, Long> releaseYearCounts = new HashMap<>();
+            movieRepository.countByReleaseYear().forEach(row -> releaseYearCounts.put((Integer) row[0], (Long) row[1]));
+            replace(moviesByReleaseYear, releaseYearCounts);
+        });
+    }
+
+    // updated in place, so readers never see a missing key while the counters are replaced
+    private static <K> void replace(Map<K, AtomicLong> counters, Map<K, Long> counts) {
+        counts.forEach((key, count) -> counters.computeIfAbsent(key, k -> new AtomicLong()).set(count));
+        counters.keySet().retainAll(counts.keySet());
+    }
+
+    private void addMovies(int releaseYear, Set<Long> genreIds, long delta) {
+        moviesByReleaseYear.computeIfAbsent(releaseYear, year -> new AtomicLong()).addAndGet(delta);
+        genreIds.forEach(genreId -> {
+            AtomicLong count = moviesByGenre.get(genreId);
+            if (count != null) { // the genre may have been deleted in the meantime
+                count.addAndGet(delta);
+            }
+        });
+    }
+
+    // counters only change once the write is committed, a rolled back write leaves them alone
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
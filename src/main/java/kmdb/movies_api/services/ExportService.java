@@ -0,0 +1,195 @@
+package kmdb.movies_api.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import kmdb.movies_api.entities.Actor;
+import kmdb.movies_api.entities.Genre;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class ExportService {
+
+    // supported export formats, NDJSON rows have the same shape as the GET endpoints
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static Format of(String format) {
+            return Arrays.stream(values())
+                    .filter(value -> value.name().equalsIgnoreCase(format))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown export format '" + format + "', expected ndjson or csv"));
+        }
+    }
+
+    // writes the rows of one chunk in a format
+    private interface RowWriter<T> extends Flushable {
+        void write(T row) throws IOException;
+    }
+
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readTransaction;
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final GenreRepository genreRepository;
+    private final int chunkSize;
+
+    public ExportService(ObjectMapper objectMapper, EntityManager entityManager, PlatformTransactionManager transactionManager,
+                         MovieRepository movieRepository, ActorRepository actorRepository, GenreRepository genreRepository,
+                         Environment env) {
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+        this.genreRepository = genreRepository;
+        this.chunkSize = env.getProperty("kmdb.export.chunk-size", Integer.class, 500);
+    }
+
+    // export all movies with their genres and actors
+    public void exportMovies(Format format, OutputStream out) throws IOException {
+        RowWriter<Movie> writer = format == Format.CSV
+                ? csv(out, List.of("id", "title", "releaseYear", "duration", "genres", "actors"), movie -> List.of(
+                        movie.getId(), movie.getTitle(), movie.getReleaseYear(), movie.getDuration(),
+                        names(movie.getGenres(), Genre::getName), names(movie.getActors(), Actor::getName)))
+                : ndjson(out, Movie.class);
+        exportRows(movieRepository::streamAll, movieRepository::fetchRelations, writer);
+    }
+
+    // export all actors
+    public void exportActors(Format format, OutputStream out) throws IOException {
+        RowWriter<Actor> writer = format == Format.CSV
+                ? csv(out, List.of("id", "name", "birthDate"), actor -> Arrays.asList(
+                        actor.getId(), actor.getName(), actor.getBirthDate()))
+                : ndjson(out, Actor.class);
+        exportRows(actorRepository::streamAll, chunk -> {}, writer);
+    }
+
+    // export all genres
+    public void exportGenres(Format format, OutputStream out) throws IOException {
+        RowWriter<Genre> writer = format == Format.CSV
+                ? csv(out, List.of("id", "name"), genre -> List.of(genre.getId(), genre.getName()))
+                : ndjson(out, Genre.class);
+        exportRows(genreRepository::streamAll, chunk -> {}, writer);
+    }
+
+    // walks a cursor over the whole table in one read-only transaction and writes it chunk by chunk
+    // the persistence context is cleared after every chunk, so memory use does not grow with the number of rows
+    private <T> void exportRows(Supplier<Stream<T>> query, Consumer<List<T>> prepare, RowWriter<T> writer) throws IOException {
+        try {
+            readTransaction.executeWithoutResult(status -> {
+                try (Stream<T> rows = query.get()) {
+                    List<T> chunk = new ArrayList<>(chunkSize);
+                    Iterator<T> iterator = rows.iterator();
+                    while (iterator.hasNext()) {
+                        chunk.add(iterator.next());
+                        if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                            prepare.accept(chunk); // load relations of the whole chunk in batches
+                            for (T row : chunk) {
+                                writer.write(row);
+                            }
+                            writer.flush();
+                            chunk.clear();
+                            entityManager.clear();
+                        }
+                    }
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) { // client went away or the connection broke
+            throw exception.getCause();
+        }
+        writer.flush();
+    }
+
+    // one JSON document per line
+    private <T> RowWriter<T> ndjson(OutputStream out, Class<T> type) throws IOException {
+        ObjectWriter rowWriter = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        return new RowWriter<>() {
+            @Override
+            public void write(T row) throws IOException {
+                rowWriter.writeValue(generator, row);
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            public void flush() throws IOException {
+                generator.flush();
+            }
+        };
+    }
+
+    // header line followed by one line per row, values are quoted when needed (RFC 4180)
+    private <T> RowWriter<T> csv(OutputStream out, List<String> header, Function<T, List<?>> valuesOf) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(csvLine(header));
+        return new RowWriter<>() {
+            @Override
+            public void write(T row) throws IOException {
+                writer.write(csvLine(valuesOf.apply(row)));
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    private static String csvLine(List<?> values) {
+        return values.stream()
+                .map(value -> value == null ? "" : csvValue(value.toString()))
+                .collect(Collectors.joining(",", "", "\r\n"));
+    }
+
+    private static String csvValue(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    // names of related entities in one column, sorted and separated by '|'
+    // '\' and '|' within a name are escaped with '\', so the column splits back into the same names
+    private static <T> String names(Set<T> related, Function<T, String> nameOf) {
+        return related.stream().map(nameOf).sorted()
+                .map(name -> name.replace("\\", "\\\\").replace("|", "\\|"))
+                .collect(Collectors.joining("|"));
+    }
+}
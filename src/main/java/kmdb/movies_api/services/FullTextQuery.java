@@ -0,0 +1,26 @@
+package kmdb.movies_api.services;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// turns search input into an FTS5 match expression where every word has to match the start of a word
+// e.g. "star wa" becomes "star"* "wa"*, quoting keeps FTS5 operators in the input from being interpreted
+public final class FullTextQuery {
+
+    private FullTextQuery() {
+    }
+
+    // empty if the input has no words to match
+    public static Optional<String> of(String text) {
+        if (text == null) {
+            return Optional.empty();
+        }
+
+        String query = Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> "\"" + word + "\"*")
+                .collect(Collectors.joining(" "));
+        return query.isEmpty() ? Optional.empty() : Optional.of(query);
+    }
+}
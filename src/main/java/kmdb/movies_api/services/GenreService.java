@@ -1,6 +1,9 @@
 package kmdb.movies_api.services;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
+import kmdb.movies_api.config.SqliteDialect;
+import kmdb.movies_api.dto.CursorPage;
+import kmdb.movies_api.dto.EntityVersion;
 import kmdb.movies_api.entities.Genre;
 import kmdb.movies_api.exceptions.ResourceAlreadyExistsException;
 import kmdb.movies_api.exceptions.ResourceNotFoundException;
@@ -8,23 +11,33 @@ import kmdb.movies_api.entities.Movie;
 import kmdb.movies_api.repositories.MovieRepository;
 import kmdb.movies_api.repositories.GenreRepository;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import static kmdb.movies_api.config.CacheConfig.*;
+
 @Service
+@Timed(value = "kmdb.service", description = "Time spent in service methods")
 @AllArgsConstructor
 public class GenreService {
 
     private final GenreRepository genreRepository;
     private final MovieRepository movieRepository;
+    private final CacheService cacheService;
+    private final CounterService counterService;
 
 
     // get all genres
@@ -38,13 +51,13 @@ public class GenreService {
 
     // get number of genres
     public String getGenreCount() {
-        return "Genres in database: " + genreRepository.count();
+        return "Genres in database: " + counterService.getGenreCount();
     }
 
     // get genres by page and page size
     public Optional<List<Genre>> getGenresByPage(int page, int size) {
         PageRequest pageable = PageRequest.of(page, size);
-        Page<Genre> genresPage = genreRepository.findAll(pageable);
+        Slice<Genre> genresPage = genreRepository.findAllBy(pageable);
         List<Genre> genresList = genresPage.getContent();
         if (genresList.isEmpty()) {
             throw new ResourceNotFoundException("No genres found on page " + page);
@@ -52,7 +65,17 @@ public class GenreService {
         return Optional.of(genresList);
     }
 
+    // get genres after the given cursor, seeks on the id so deep pages cost the same as the first one
+    public Optional<CursorPage<Genre>> getGenresAfter(String after, int size) {
+        Slice<Genre> genresSlice = genreRepository.findAllAfter(CursorPage.decode(after), PageRequest.ofSize(size));
+        if (genresSlice.isEmpty()) {
+            throw new ResourceNotFoundException("No genres found after cursor '" + after + "'");
+        }
+        return Optional.of(CursorPage.of(genresSlice, Genre::getId));
+    }
+
     // get genre by id
+    @Cacheable(cacheNames = GENRES, key = "#genreId")
     public Optional<Genre> getGenreById(Long genreId) {
         Optional<Genre> genre = genreRepository.findById(genreId);
         if (genre.isPresent()) {
@@ -72,10 +95,11 @@ public class GenreService {
         };
     }
 
-    // filter genres by name
+    // filter genres by name, ranked full-text search where each word matches the start of a word in the name
     public Optional<List<Genre>> findGenresByName(String name) {
-        Specification<Genre> spec = nameContains(name);
-        List<Genre> genresList = genreRepository.findAll(spec);
+        List<Genre> genresList = FullTextQuery.of(name)
+                .map(genreRepository::searchByName)
+                .orElseGet(() -> genreRepository.findAll(nameContains(name))); // no words given
 
         if (genresList.isEmpty()) { // in case no movie matches given title
             throw new ResourceNotFoundException("Genre containing '" + name + "' does not exist");
@@ -84,60 +108,88 @@ public class GenreService {
         return Optional.of(genresList);
     }
 
-    // filter movies by genre
-    public Optional<List<Movie>> getMoviesByGenre(Long genreId) {
-        Genre genre = genreRepository.findById(genreId)
-                .orElseThrow(() -> new ResourceNotFoundException("Genre with ID " + genreId + " does not exist"));
-
-        List<Movie> moviesList = new ArrayList<>(movieRepository.findAllByGenresContains(genre));
+    // filter movies by genre, all or by page, sorted by a movie field, see MovieSort
+    // the genre itself is only loaded when there are no movies, to tell a missing genre from an empty one
+    @Transactional(readOnly = true)
+    public Optional<List<Movie>> getMoviesByGenre(Long genreId, Integer page, int size, String sort) {
+        Sort order = MovieSort.of(sort);
+        Pageable pageable = page == null ? Pageable.unpaged(order) : PageRequest.of(page, size, order);
+        List<Movie> moviesList = movieRepository.fetchRelations(movieRepository.findAllByGenreId(genreId, pageable).getContent());
 
         if (moviesList.isEmpty()) {
+            Genre genre = genreRepository.findById(genreId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Genre with ID " + genreId + " does not exist"));
             throw new ResourceNotFoundException("No movies found in genre '" + genre.getName() + "'");
         }
         return Optional.of(moviesList);
     }
 
     // add a genre
+    @Transactional
     public ResponseEntity<String> addGenre(Genre genre) {
-        Optional<Genre> genreOptional = genreRepository
-                .findByName(genre.getName());
-        if(genreOptional.isPresent()) {
+        // the unique index on the name detects duplicates, flushed here so the conflict surfaces as a 409
+        try {
+            genreRepository.saveAndFlush(genre);
+        } catch (DataIntegrityViolationException exception) {
+            if (!SqliteDialect.isUniqueViolation(exception, "genre.name")) {
+                throw exception;
+            }
             throw new ResourceAlreadyExistsException("Genre '" + genre.getName() + "' already exists in database");
         }
-        genreRepository.save(genre);
+        counterService.genreAdded(genre.getId());
         return new ResponseEntity<>("Genre '" + genre.getName() + "' added successfully", HttpStatus.CREATED);
     }
 
     // delete a genre
+    // relationships are counted and removed on the genres join table, the movies themselves are never loaded
     @Transactional
     public void deleteGenre(Long genreId, boolean force) {
         Genre genre = genreRepository.findById(genreId)
                 .orElseThrow(() -> new ResourceNotFoundException("Genre with ID " + genreId + " does not exist"));
 
-        int NumOfMovies = genre.getMovies().size();
-
         if (force) { // if force is true then remove all relationships and delete resource
-            genreRepository.deleteById(genreId);
-            return;
-        }
-
-            if (NumOfMovies > 0) { // if force is false and relationships exist then return exception
-                if (NumOfMovies == 1) {
-                    throw new IllegalStateException("Cannot delete genre '" + genre.getName() + "' because it is associated with " + NumOfMovies + " movie");
+            cacheService.evictMovies(movieRepository.findIdsByGenreId(genreId)); // movies embed their genres
+            movieRepository.touchAllByGenreId(genreId, Instant.now()); // the movies no longer list the genre
+            movieRepository.removeGenreFromAll(genreId);
+        } else {
+            long numOfMovies = movieRepository.countAllByGenreId(genreId);
+            if (numOfMovies > 0) { // if force is false and relationships exist then return exception
+                if (numOfMovies == 1) {
+                    throw new IllegalStateException("Cannot delete genre '" + genre.getName() + "' because it is associated with " + numOfMovies + " movie");
                 } else {
-                    throw new IllegalStateException("Cannot delete genre '" + genre.getName() + "' because it is associated with " + NumOfMovies + " movies");
+                    throw new IllegalStateException("Cannot delete genre '" + genre.getName() + "' because it is associated with " + numOfMovies + " movies");
                 }
             }
-            genreRepository.deleteById(genreId); // if force is false and relationships do not exist then delete resource
+        }
+        cacheService.evict(GENRES, genreId);
+        genreRepository.delete(genre);
+        counterService.genreRemoved(genreId);
     }
 
     // update genre
+    // keeping the same name changes nothing, neither the version of the genre nor of its movies
     @Transactional
-    public void updateGenre(Long genreId, String name) {
+    public void updateGenre(Long genreId, String name, String ifMatch) {
         Genre genre = genreRepository.findById(genreId)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Genre with ID " + genreId + " does not exist in database"
                 ));
+        new EntityVersion(genre.getVersion(), genre.getUpdatedAt()).checkIfMatch(ifMatch, "Genre with ID " + genreId);
+        if (genre.getName().equals(name)) {
+            return;
+        }
+        cacheService.evict(GENRES, genreId);
+        cacheService.evictMovies(movieRepository.findIdsByGenreId(genreId)); // movies embed their genres
         genre.setName(name);
+
+        try {
+            genreRepository.flush();
+        } catch (DataIntegrityViolationException exception) {
+            if (!SqliteDialect.isUniqueViolation(exception, "genre.name")) {
+                throw exception;
+            }
+            throw new ResourceAlreadyExistsException("Genre '" + name + "' already exists in database");
+        }
+        movieRepository.touchAllByGenreId(genreId, Instant.now()); // the movies embed the genre
     }
 }
@@ -0,0 +1,255 @@
+package kmdb.movies_api.services;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import kmdb.movies_api.dto.ImportReport;
+import kmdb.movies_api.entities.Actor;
+import kmdb.movies_api.entities.Genre;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class ImportService {
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final GenreRepository genreRepository;
+    private final CounterService counterService;
+    private final int chunkSize;
+
+    public ImportService(ObjectMapper objectMapper, Validator validator, PlatformTransactionManager transactionManager,
+                         MovieRepository movieRepository, ActorRepository actorRepository, GenreRepository genreRepository,
+                         CounterService counterService, Environment env) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+        this.genreRepository = genreRepository;
+        this.counterService = counterService;
+        this.chunkSize = env.getProperty("kmdb.import.chunk-size", Integer.class, 1000);
+    }
+
+    // a parsed row and its position in the request body
+    private record Row<T>(long number, T value) {
+    }
+
+    // writes one chunk of valid rows and records the rows it rejects
+    private interface ChunkWriter<T> {
+        List<Row<T>> write(List<Row<T>> chunk, ImportReport report);
+    }
+
+    // import movies, their genres and actors are referenced by name and must already exist
+    public ImportReport importMovies(InputStream body) {
+        return importRows(body, Movie.class, Movie::getTitle, this::writeMovies);
+    }
+
+    // import actors
+    public ImportReport importActors(InputStream body) {
+        return importRows(body, Actor.class, Actor::getName, this::writeActors);
+    }
+
+    // import genres
+    public ImportReport importGenres(InputStream body) {
+        return importRows(body, Genre.class, Genre::getName, this::writeGenres);
+    }
+
+    // reads an NDJSON stream or a JSON array one row at a time, so only the current chunk is held in memory
+    private <T> ImportReport importRows(InputStream body, Class<T> type, Function<T, String> keyOf, ChunkWriter<T> writer) {
+        ImportReport report = new ImportReport();
+        List<Row<T>> chunk = new ArrayList<>(chunkSize);
+        long rowNumber = 0;
+        String malformed = null;
+
+        try (MappingIterator<T> rows = objectMapper.readerFor(type).readValues(body)) {
+            while (rows.hasNextValue()) {
+                T value = rows.nextValue();
+                rowNumber++;
+
+                List<String> violations = validator.validate(value).stream()
+                        .map(ConstraintViolation::getMessage)
+                        .toList();
+                if (!violations.isEmpty()) {
+                    report.addError(rowNumber, keyOf.apply(value), violations);
+                    continue;
+                }
+
+                chunk.add(new Row<>(rowNumber, value));
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, keyOf, writer, report);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException exception) { // the stream cannot be resumed after malformed input, so the import stops here
+            malformed = "Malformed JSON: " + exception.getMessage();
+        }
+
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, keyOf, writer, report);
+        }
+        if (malformed != null) {
+            report.addError(rowNumber + 1, null, List.of(malformed));
+        }
+        report.sortErrors(); // rows rejected before writing are reported before the write errors of earlier rows
+        return report;
+    }
+
+    // every chunk commits in its own transaction, a failed chunk does not undo the ones before it
+    private <T> void writeChunk(List<Row<T>> chunk, Function<T, String> keyOf, ChunkWriter<T> writer, ImportReport report) {
+        List<Row<T>> accepted = writer.write(chunk, report);
+        if (!accepted.isEmpty()) {
+            saveRows(accepted, keyOf, report);
+        }
+    }
+
+    // a rolled back group is split in halves and written again, until only the rows that fail on their own are left
+    // a single bad row costs about two transactions per halving instead of one transaction per row of the chunk
+    private <T> void saveRows(List<Row<T>> rows, Function<T, String> keyOf, ImportReport report) {
+        try {
+            writeTransaction.executeWithoutResult(status -> rows.forEach(row -> saveRow(row.value())));
+            report.addImported(rows.size());
+        } catch (DataAccessException exception) {
+            rows.forEach(row -> clearId(row.value())); // ids of the rolled back transaction were never stored
+            if (rows.size() == 1) {
+                Row<T> row = rows.getFirst();
+                report.addError(row.number(), keyOf.apply(row.value()), List.of(exception.getMostSpecificCause().getMessage()));
+                return;
+            }
+            int half = rows.size() / 2;
+            saveRows(rows.subList(0, half), keyOf, report);
+            saveRows(rows.subList(half, rows.size()), keyOf, report);
+        }
+    }
+
+    // counters are updated when the chunk commits
+    private void saveRow(Object value) {
+        switch (value) {
+            case Movie movie -> {
+                movieRepository.save(movie);
+                counterService.movieAdded(movie);
+            }
+            case Actor actor -> {
+                actorRepository.save(actor);
+                counterService.actorAdded();
+            }
+            case Genre genre -> {
+                genreRepository.save(genre);
+                counterService.genreAdded(genre.getId());
+            }
+            default -> throw new IllegalArgumentException("Cannot import " + value.getClass().getSimpleName());
+        }
+    }
+
+    // a row with an id would be merged instead of inserted when it is written again
+    private static void clearId(Object value) {
+        switch (value) {
+            case Movie movie -> movie.setId(null);
+            case Actor actor -> actor.setId(null);
+            case Genre genre -> genre.setId(null);
+            default -> throw new IllegalArgumentException("Cannot import " + value.getClass().getSimpleName());
+        }
+    }
+
+    // checks titles and resolves genre and actor names for the whole chunk with one query per table
+    private List<Row<Movie>> writeMovies(List<Row<Movie>> chunk, ImportReport report) {
+        Set<String> titles = chunk.stream().map(row -> row.value().getTitle()).collect(Collectors.toSet());
+        Set<String> genreNames = chunk.stream()
+                .flatMap(row -> row.value().getGenres().stream())
+                .map(Genre::getName)
+                .collect(Collectors.toSet());
+        Set<String> actorNames = chunk.stream()
+                .flatMap(row -> row.value().getActors().stream())
+                .map(Actor::getName)
+                .collect(Collectors.toSet());
+
+        Set<String> taken = new HashSet<>();
+        Map<String, Genre> genres = new HashMap<>();
+        Map<String, Actor> actors = new HashMap<>();
+        readTransaction.executeWithoutResult(status -> {
+            taken.addAll(movieRepository.findTitlesIn(titles));
+            if (!genreNames.isEmpty()) {
+                genreRepository.findAllByNameIn(genreNames).forEach(genre -> genres.put(genre.getName(), genre));
+            }
+            if (!actorNames.isEmpty()) {
+                actorRepository.findAllByNameIn(actorNames).forEach(actor -> actors.put(actor.getName(), actor));
+            }
+        });
+
+        List<Row<Movie>> accepted = new ArrayList<>();
+        for (Row<Movie> row : chunk) {
+            Movie movie = row.value();
+            List<String> errors = new ArrayList<>();
+
+            Set<Genre> movieGenres = new HashSet<>();
+            movie.getGenres().forEach(genre -> Optional.ofNullable(genres.get(genre.getName()))
+                    .ifPresentOrElse(movieGenres::add, () -> errors.add("Genre '" + genre.getName() + "' not found")));
+            Set<Actor> movieActors = new HashSet<>();
+            movie.getActors().forEach(actor -> Optional.ofNullable(actors.get(actor.getName()))
+                    .ifPresentOrElse(movieActors::add, () -> errors.add("Actor '" + actor.getName() + "' not found")));
+
+            if (errors.isEmpty() && !taken.add(movie.getTitle())) { // also catches duplicates within the request
+                errors.add("Movie '" + movie.getTitle() + "' already exists");
+            }
+            if (!errors.isEmpty()) {
+                report.addError(row.number(), movie.getTitle(), errors);
+                continue;
+            }
+
+            movie.setGenres(movieGenres);
+            movie.setActors(movieActors);
+            accepted.add(row);
+        }
+        return accepted;
+    }
+
+    private List<Row<Actor>> writeActors(List<Row<Actor>> chunk, ImportReport report) {
+        Set<String> names = chunk.stream().map(row -> row.value().getName()).collect(Collectors.toSet());
+        Set<String> taken = readTransaction.execute(status -> actorRepository.findAllByNameIn(names).stream()
+                .map(Actor::getName)
+                .collect(Collectors.toCollection(HashSet::new)));
+        return rejectTaken(chunk, Objects.requireNonNull(taken), Actor::getName, "Actor", report);
+    }
+
+    private List<Row<Genre>> writeGenres(List<Row<Genre>> chunk, ImportReport report) {
+        Set<String> names = chunk.stream().map(row -> row.value().getName()).collect(Collectors.toSet());
+        Set<String> taken = readTransaction.execute(status -> genreRepository.findAllByNameIn(names).stream()
+                .map(Genre::getName)
+                .collect(Collectors.toCollection(HashSet::new)));
+        return rejectTaken(chunk, Objects.requireNonNull(taken), Genre::getName, "Genre", report);
+    }
+
+    private <T> List<Row<T>> rejectTaken(List<Row<T>> chunk, Set<String> taken, Function<T, String> nameOf,
+                                         String label, ImportReport report) {
+        List<Row<T>> accepted = new ArrayList<>();
+        for (Row<T> row : chunk) {
+            String name = nameOf.apply(row.value());
+            if (!taken.add(name)) {
+                report.addError(row.number(), name, List.of(label + " '" + name + "' already exists"));
+            } else {
+                accepted.add(row);
+            }
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,106 @@
+package kmdb.movies_api.services;
+
+import jakarta.persistence.criteria.*;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.entities.MovieSearchEntry;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+// combination of movie filters, every given filter has to match
+// genres and actors match when the movie has any of the given ones, title matches like /search
+// builds both the criteria query for the movies and the SQL for the facet counts, so both always select the same movies
+public record MovieFilter(String title, List<Long> genreIds, List<Long> actorIds,
+                          Integer releaseYearFrom, Integer releaseYearTo,
+                          Integer durationFrom, Integer durationTo) {
+
+    public MovieFilter {
+        genreIds = genreIds == null ? List.of() : List.copyOf(genreIds);
+        actorIds = actorIds == null ? List.of() : List.copyOf(actorIds);
+    }
+
+    // true when no filter is given, i.e. the filter matches every movie
+    public boolean isEmpty() {
+        return titleQuery().isEmpty() && genreIds.isEmpty() && actorIds.isEmpty()
+                && releaseYearFrom == null && releaseYearTo == null && durationFrom == null && durationTo == null;
+    }
+
+    public Specification<Movie> toSpecification() {
+        return (root, query, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            titleQuery().ifPresent(match -> {
+                Subquery<Long> matches = query.subquery(Long.class);
+                Root<MovieSearchEntry> entry = matches.from(MovieSearchEntry.class);
+                matches.select(entry.get("movieId")).where(criteriaBuilder.equal(entry.get("match"), match));
+                predicates.add(root.get("id").in(matches));
+            });
+            if (!genreIds.isEmpty()) {
+                predicates.add(root.get("id").in(moviesRelatedTo(query, "genres", genreIds)));
+            }
+            if (!actorIds.isEmpty()) {
+                predicates.add(root.get("id").in(moviesRelatedTo(query, "actors", actorIds)));
+            }
+            if (releaseYearFrom != null) {
+                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("releaseYear"), releaseYearFrom));
+            }
+            if (releaseYearTo != null) {
+                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("releaseYear"), releaseYearTo));
+            }
+            if (durationFrom != null) {
+                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("duration"), durationFrom));
+            }
+            if (durationTo != null) {
+                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("duration"), durationTo));
+            }
+            return criteriaBuilder.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    // WHERE clause over the movie table with ? placeholders, the values are added to parameters in order
+    public String toSql(List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+        titleQuery().ifPresent(match -> {
+            conditions.add("movie.id IN (SELECT rowid FROM movie_search WHERE movie_search MATCH ?)");
+            parameters.add(match);
+        });
+        if (!genreIds.isEmpty()) {
+            conditions.add("movie.id IN (SELECT movie_id FROM genres WHERE genre_id IN (" + placeholders(genreIds.size()) + "))");
+            parameters.addAll(genreIds);
+        }
+        if (!actorIds.isEmpty()) {
+            conditions.add("movie.id IN (SELECT movie_id FROM actors WHERE actor_id IN (" + placeholders(actorIds.size()) + "))");
+            parameters.addAll(actorIds);
+        }
+        addBound(conditions, parameters, "movie.release_year >= ?", releaseYearFrom);
+        addBound(conditions, parameters, "movie.release_year <= ?", releaseYearTo);
+        addBound(conditions, parameters, "movie.duration >= ?", durationFrom);
+        addBound(conditions, parameters, "movie.duration <= ?", durationTo);
+        return conditions.isEmpty() ? "1 = 1" : String.join(" AND ", conditions);
+    }
+
+    private Optional<String> titleQuery() {
+        return FullTextQuery.of(title);
+    }
+
+    // ids of the movies related to any of the given genres or actors
+    private static Subquery<Long> moviesRelatedTo(CriteriaQuery<?> query, String relation, List<Long> ids) {
+        Subquery<Long> related = query.subquery(Long.class);
+        Root<Movie> movie = related.from(Movie.class);
+        related.select(movie.get("id")).where(movie.join(relation).get("id").in(ids));
+        return related;
+    }
+
+    private static void addBound(List<String> conditions, List<Object> parameters, String condition, Integer value) {
+        if (value != null) {
+            conditions.add(condition);
+            parameters.add(value);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
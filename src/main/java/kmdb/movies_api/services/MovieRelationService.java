@@ -0,0 +1,239 @@
+package kmdb.movies_api.services;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import kmdb.movies_api.dto.RelationChanges;
+import kmdb.movies_api.dto.RelationReport;
+import kmdb.movies_api.exceptions.ResourceNotFoundException;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+
+// assigns actors and genres to movies in bulk, straight on the actors and genres join tables without loading any movie
+// ids are checked with one IN query per table and the current pairs of the movies are read once,
+// then only the difference is inserted and deleted with one multi-row statement each
+@Service
+@Timed(value = "kmdb.service", description = "Time spent in service methods")
+@AllArgsConstructor
+public class MovieRelationService {
+
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final GenreRepository genreRepository;
+    private final CacheService cacheService;
+    private final CounterService counterService;
+    private final EntityManager entityManager;
+
+    // join table of each relation and its column for the related entity
+    private enum Relation {
+        ACTORS("Actor", "actors", "actor_id"),
+        GENRES("Genre", "genres", "genre_id");
+
+        private final String entity;
+        private final String table;
+        private final String column;
+
+        Relation(String entity, String table, String column) {
+            this.entity = entity;
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    private record Pair(Long movieId, Long id) {
+    }
+
+    // add and remove movie-actor pairs, pairs that already exist are not added again and missing pairs are not removed
+    @Transactional
+    public RelationReport updateActors(RelationChanges<RelationChanges.ActorPair> changes) {
+        return update(Relation.ACTORS, changes);
+    }
+
+    // add and remove movie-genre pairs, pairs that already exist are not added again and missing pairs are not removed
+    @Transactional
+    public RelationReport updateGenres(RelationChanges<RelationChanges.GenrePair> changes) {
+        return update(Relation.GENRES, changes);
+    }
+
+    // make the given actors the whole cast of the movie
+    @Transactional
+    public RelationReport replaceActors(Long movieId, Set<Long> actorIds) {
+        return replace(Relation.ACTORS, movieId, actorIds);
+    }
+
+    // make the given genres the only genres of the movie
+    @Transactional
+    public RelationReport replaceGenres(Long movieId, Set<Long> genreIds) {
+        return replace(Relation.GENRES, movieId, genreIds);
+    }
+
+    // ids of the actors of a movie, read from the actors join table without loading the movie
+    public Set<Long> findActorIds(Long movieId) {
+        return relatedIds(Relation.ACTORS, movieId);
+    }
+
+    // ids of the genres of a movie, read from the genres join table without loading the movie
+    public Set<Long> findGenreIds(Long movieId) {
+        return relatedIds(Relation.GENRES, movieId);
+    }
+
+    // write only the difference between the current and the wanted actors of a movie to the actors join table
+    // the caller updates the movie version, caches and counters
+    public void writeActors(Long movieId, Set<Long> current, Set<Long> wanted) {
+        write(Relation.ACTORS, diff(movieId, wanted, current), diff(movieId, current, wanted));
+    }
+
+    // write only the difference between the current and the wanted genres of a movie to the genres join table
+    // the caller updates the movie version, caches and counters
+    public void writeGenres(Long movieId, Set<Long> current, Set<Long> wanted) {
+        write(Relation.GENRES, diff(movieId, wanted, current), diff(movieId, current, wanted));
+    }
+
+    private RelationReport update(Relation relation, RelationChanges<?> changes) {
+        Set<Pair> add = pairs(changes.add());
+        Set<Pair> remove = pairs(changes.remove());
+        for (Pair pair : add) {
+            if (remove.contains(pair)) {
+                throw new IllegalArgumentException(relation.entity + " with ID " + pair.id() + " cannot be both added to and removed from movie with ID " + pair.movieId());
+            }
+        }
+
+        Set<Long> movieIds = new HashSet<>();
+        Set<Long> ids = new HashSet<>();
+        for (Set<Pair> pairs : List.of(add, remove)) {
+            pairs.forEach(pair -> {
+                movieIds.add(pair.movieId());
+                ids.add(pair.id());
+            });
+        }
+        checkExist(relation, movieIds, ids);
+
+        Set<Pair> existing = findPairs(relation, movieIds);
+        Set<Pair> inserted = new LinkedHashSet<>(add);
+        inserted.removeAll(existing);
+        Set<Pair> deleted = new LinkedHashSet<>(remove);
+        deleted.retainAll(existing);
+        return apply(relation, inserted, deleted);
+    }
+
+    private RelationReport replace(Relation relation, Long movieId, Set<Long> ids) {
+        checkExist(relation, Set.of(movieId), ids);
+
+        Set<Long> current = relatedIds(relation, movieId);
+        return apply(relation, diff(movieId, ids, current), diff(movieId, current, ids));
+    }
+
+    // pairs of the movie with the ids that are not in others
+    private static Set<Pair> diff(Long movieId, Set<Long> ids, Set<Long> others) {
+        Set<Pair> pairs = new LinkedHashSet<>();
+        ids.stream().filter(id -> !others.contains(id)).forEach(id -> pairs.add(new Pair(movieId, id)));
+        return pairs;
+    }
+
+    private static Set<Pair> pairs(List<? extends RelationChanges.Pair> pairs) {
+        Set<Pair> result = new LinkedHashSet<>();
+        pairs.forEach(pair -> result.add(new Pair(pair.movieId(), pair.relatedId())));
+        return result;
+    }
+
+    // one IN query per table, every id that does not exist is reported
+    private void checkExist(Relation relation, Set<Long> movieIds, Set<Long> ids) {
+        List<String> missing = new ArrayList<>();
+        if (!movieIds.isEmpty()) {
+            Set<Long> found = movieRepository.findIdsIn(movieIds);
+            movieIds.stream().filter(id -> !found.contains(id)).sorted()
+                    .forEach(id -> missing.add("Movie with ID " + id + " does not exist in database"));
+        }
+        if (!ids.isEmpty()) {
+            Set<Long> found = relation == Relation.ACTORS ? actorRepository.findIdsIn(ids) : genreRepository.findIdsIn(ids);
+            ids.stream().filter(id -> !found.contains(id)).sorted()
+                    .forEach(id -> missing.add(relation.entity + " with ID " + id + " does not exist in database"));
+        }
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException(missing);
+        }
+    }
+
+    // pairs of the join table that belong to the given movies
+    private Set<Pair> findPairs(Relation relation, Set<Long> movieIds) {
+        Set<Pair> pairs = new HashSet<>();
+        if (movieIds.isEmpty()) {
+            return pairs;
+        }
+        Query query = entityManager.createNativeQuery("SELECT movie_id, " + relation.column + " FROM " + relation.table +
+                " WHERE movie_id IN (" + placeholders(movieIds.size(), "?") + ")");
+        bind(query, new ArrayList<>(movieIds));
+        for (Object result : query.getResultList()) {
+            Object[] row = (Object[]) result;
+            pairs.add(new Pair(((Number) row[0]).longValue(), ((Number) row[1]).longValue()));
+        }
+        return pairs;
+    }
+
+    private Set<Long> relatedIds(Relation relation, Long movieId) {
+        Set<Long> ids = new HashSet<>();
+        findPairs(relation, Set.of(movieId)).forEach(pair -> ids.add(pair.id()));
+        return ids;
+    }
+
+    private RelationReport apply(Relation relation, Set<Pair> inserted, Set<Pair> deleted) {
+        write(relation, inserted, deleted);
+
+        Set<Long> changedMovieIds = new HashSet<>();
+        inserted.forEach(pair -> changedMovieIds.add(pair.movieId()));
+        deleted.forEach(pair -> changedMovieIds.add(pair.movieId()));
+        if (!changedMovieIds.isEmpty()) {
+            movieRepository.touchAllById(changedMovieIds, Instant.now()); // the movies embed their actors and genres
+            cacheService.evictMovies(changedMovieIds);
+        }
+        if (relation == Relation.GENRES) {
+            Map<Long, Long> deltas = new HashMap<>();
+            inserted.forEach(pair -> deltas.merge(pair.id(), 1L, Long::sum));
+            deleted.forEach(pair -> deltas.merge(pair.id(), -1L, Long::sum));
+            counterService.genreMoviesChanged(deltas);
+        }
+        return new RelationReport(inserted.size(), deleted.size());
+    }
+
+    // one multi-row insert and one multi-row delete on the join table
+    private void write(Relation relation, Set<Pair> inserted, Set<Pair> deleted) {
+        if (!inserted.isEmpty()) {
+            Query insert = entityManager.createNativeQuery("INSERT INTO " + relation.table + " (movie_id, " + relation.column + ") " +
+                    "VALUES " + placeholders(inserted.size(), "(?, ?)"));
+            bind(insert, flatten(inserted));
+            insert.executeUpdate();
+        }
+        if (!deleted.isEmpty()) {
+            Query delete = entityManager.createNativeQuery("DELETE FROM " + relation.table + " WHERE (movie_id, " + relation.column + ") " +
+                    "IN (VALUES " + placeholders(deleted.size(), "(?, ?)") + ")");
+            bind(delete, flatten(deleted));
+            delete.executeUpdate();
+        }
+    }
+
+    private static List<Object> flatten(Set<Pair> pairs) {
+        List<Object> parameters = new ArrayList<>(pairs.size() * 2);
+        pairs.forEach(pair -> {
+            parameters.add(pair.movieId());
+            parameters.add(pair.id());
+        });
+        return parameters;
+    }
+
+    private static void bind(Query query, List<Object> parameters) {
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+    }
+
+    private static String placeholders(int count, String placeholder) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+}
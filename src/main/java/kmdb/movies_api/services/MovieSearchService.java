@@ -0,0 +1,143 @@
+package kmdb.movies_api.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import kmdb.movies_api.dto.MovieSearchResult;
+import kmdb.movies_api.dto.MovieSearchResult.GenreFacet;
+import kmdb.movies_api.entities.Genre;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+@Service
+@Timed(value = "kmdb.service", description = "Time spent in service methods")
+@AllArgsConstructor
+public class MovieSearchService {
+
+    private final MovieRepository movieRepository;
+    private final GenreRepository genreRepository;
+    private final CounterService counterService;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    // position of a keyset cursor: the sort it was made for and the sort values of the last movie before it
+    private record Cursor(String sort, Map<String, Object> keys) {
+    }
+
+    // movies matching every given filter, sorted and paged by keyset, with genre and decade counts over all matches
+    // sort is a field and an optional direction, see MovieSort
+    @Transactional(readOnly = true)
+    public Optional<MovieSearchResult> searchMovies(MovieFilter filter, String sort, String after, int size) {
+        Sort order = MovieSort.of(sort);
+        ScrollPosition position = after == null || after.isEmpty()
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(decodeCursor(after, sort));
+
+        Window<Movie> window = movieRepository.findBy(filter.toSpecification(),
+                query -> query.sortBy(order).limit(size).scroll(position));
+        List<Movie> movies = movieRepository.fetchRelations(window.getContent());
+        String nextCursor = window.hasNext() && !movies.isEmpty()
+                ? encodeCursor(sort, (KeysetScrollPosition) window.positionAt(movies.size() - 1))
+                : null;
+
+        return Optional.of(filter.isEmpty()
+                ? countersFacets(movies, nextCursor)
+                : queryFacets(filter, movies, nextCursor));
+    }
+
+    // without filters every movie matches, so the maintained counters already hold the facet counts
+    private MovieSearchResult countersFacets(List<Movie> movies, String nextCursor) {
+        Map<Long, Long> genreCounts = counterService.getMovieCountsByGenre();
+        List<GenreFacet> genres = new ArrayList<>();
+        for (Genre genre : genreRepository.findAll()) {
+            long count = genreCounts.getOrDefault(genre.getId(), 0L);
+            if (count > 0) {
+                genres.add(new GenreFacet(genre.getId(), genre.getName(), count));
+            }
+        }
+        Map<Integer, Long> decades = new TreeMap<>();
+        counterService.getMovieCountsByReleaseYear().forEach((releaseYear, count) ->
+                decades.merge(releaseYear / 10 * 10, count, Long::sum));
+        return new MovieSearchResult(movies, nextCursor, counterService.getMovieCount(), sortFacets(genres), decades);
+    }
+
+    // total, genre and decade counts in one statement, the matching movies are selected once and reused by every count
+    // unused columns hold 0 and '' rather than NULL, the driver takes the column types from the first row
+    private MovieSearchResult queryFacets(MovieFilter filter, List<Movie> movies, String nextCursor) {
+        List<Object> parameters = new ArrayList<>();
+        Query query = entityManager.createNativeQuery(
+                "WITH matched AS MATERIALIZED (SELECT movie.id, movie.release_year FROM movie WHERE " + filter.toSql(parameters) + ") " +
+                "SELECT 'total', 0, '', count(*) FROM matched " +
+                "UNION ALL SELECT 'genre', genre.id, genre.name, count(*) FROM matched " +
+                "JOIN genres ON genres.movie_id = matched.id JOIN genre ON genre.id = genres.genre_id GROUP BY genre.id " +
+                "UNION ALL SELECT 'decade', matched.release_year / 10 * 10, '', count(*) FROM matched " +
+                "GROUP BY matched.release_year / 10");
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+
+        long total = 0;
+        List<GenreFacet> genres = new ArrayList<>();
+        Map<Integer, Long> decades = new TreeMap<>();
+        for (Object result : query.getResultList()) {
+            Object[] row = (Object[]) result;
+            long count = ((Number) row[3]).longValue();
+            switch ((String) row[0]) {
+                case "total" -> total = count;
+                case "genre" -> genres.add(new GenreFacet(((Number) row[1]).longValue(), (String) row[2], count));
+                default -> decades.put(((Number) row[1]).intValue(), count);
+            }
+        }
+        return new MovieSearchResult(movies, nextCursor, total, sortFacets(genres), decades);
+    }
+
+    // biggest genres first
+    private static List<GenreFacet> sortFacets(List<GenreFacet> genres) {
+        genres.sort(Comparator.comparingLong(GenreFacet::count).reversed().thenComparing(GenreFacet::name));
+        return genres;
+    }
+
+    // cursors are opaque to clients, they carry the sort so a cursor cannot be used with a different order
+    private String encodeCursor(String sort, KeysetScrollPosition position) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(new Cursor(sort, position.getKeys()));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("Cannot encode cursor", exception);
+        }
+    }
+
+    private Map<String, Object> decodeCursor(String after, String sort) {
+        Cursor cursor;
+        try {
+            cursor = objectMapper.readValue(new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8), Cursor.class);
+        } catch (IllegalArgumentException | JsonProcessingException exception) {
+            throw new IllegalArgumentException("Invalid cursor '" + after + "'");
+        }
+        if (cursor.keys() == null || !sort.equals(cursor.sort())) {
+            throw new IllegalArgumentException("Cursor '" + after + "' was made for a different sort");
+        }
+
+        // JSON numbers come back as the smallest fitting type, the keyset query needs the types of the fields
+        Map<String, Object> keys = new LinkedHashMap<>();
+        cursor.keys().forEach((field, value) -> keys.put(field, switch (field) {
+            case "id" -> ((Number) value).longValue();
+            case "releaseYear", "duration" -> ((Number) value).intValue();
+            default -> value;
+        }));
+        return keys;
+    }
+}
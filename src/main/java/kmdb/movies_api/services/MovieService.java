@@ -1,6 +1,10 @@
 package kmdb.movies_api.services;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
+import kmdb.movies_api.config.SqliteDialect;
+import kmdb.movies_api.dto.CursorPage;
+import kmdb.movies_api.dto.EntityVersion;
+import kmdb.movies_api.dto.MovieSummary;
 import kmdb.movies_api.entities.Actor;
 import kmdb.movies_api.entities.Movie;
 import kmdb.movies_api.repositories.ActorRepository;
@@ -10,29 +14,44 @@ import kmdb.movies_api.entities.Genre;
 import kmdb.movies_api.repositories.GenreRepository;
 import kmdb.movies_api.repositories.MovieRepository;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static kmdb.movies_api.config.CacheConfig.*;
+
 @Service
+@Timed(value = "kmdb.service", description = "Time spent in service methods")
 @AllArgsConstructor
 public class MovieService {
 
     private final MovieRepository movieRepository;
     private final GenreRepository genreRepository;
     private final ActorRepository actorRepository;
+    private final CacheService cacheService;
+    private final CounterService counterService;
+    private final MovieRelationService movieRelationService;
 
     // get all movies
+    @Transactional(readOnly = true)
     public Optional<List<Movie>> getAllMovies() {
-        List<Movie> moviesList = movieRepository.findAll();
+        List<Movie> moviesList = movieRepository.fetchRelations(movieRepository.findAll());
         if (moviesList.isEmpty()) {
             throw new ResourceNotFoundException("No movies found in the database");
         }
@@ -41,14 +60,27 @@ public class MovieService {
 
     // get number of movies
     public String getMovieCount() {
-        return "Movies in database: " + movieRepository.count();
+        return "Movies in database: " + counterService.getMovieCount();
+    }
+
+    // get number of movies in a genre
+    public String getMovieCountByGenre(Long genreId) {
+        long count = counterService.getMovieCountByGenre(genreId)
+                .orElseThrow(() -> new ResourceNotFoundException("Genre with ID " + genreId + " does not exist"));
+        return "Movies with genre ID " + genreId + ": " + count;
+    }
+
+    // get number of movies released in a year
+    public String getMovieCountByReleaseYear(int releaseYear) {
+        return "Movies released in " + releaseYear + ": " + counterService.getMovieCountByReleaseYear(releaseYear);
     }
 
     // get movies by page and page size
+    @Transactional(readOnly = true)
     public Optional<List<Movie>> getMoviesByPage(int page, int size) {
         PageRequest pageable = PageRequest.of(page, size);
-        Page<Movie> moviesPage = movieRepository.findAll(pageable);
-        List<Movie> moviesList = moviesPage.getContent();
+        Slice<Movie> moviesSlice = movieRepository.findAllBy(pageable);
+        List<Movie> moviesList = movieRepository.fetchRelations(moviesSlice.getContent());
 
         // method #1
         return Optional.ofNullable(Optional.of(moviesList)
@@ -56,22 +88,86 @@ public class MovieService {
                 .orElseThrow(() -> new ResourceNotFoundException("No movies found on page " + page)));
     }
 
+    // get compact movie summaries, all of them or by page, optionally only of one genre
+    // reads only columns and aggregated names, nothing is loaded into the persistence context
+    @Transactional(readOnly = true)
+    public Optional<List<MovieSummary>> getMovieSummaries(Long genreId, Integer page, int size, Set<String> fields) {
+        Set<String> included = fields == null || fields.isEmpty() ? Set.copyOf(MovieSummary.FIELDS) : fields;
+        List<String> unknown = included.stream().filter(field -> !MovieSummary.FIELDS.contains(field)).sorted().toList();
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown movie summary fields " + unknown + ", expected any of " + MovieSummary.FIELDS);
+        }
+        if (genreId != null && !genreRepository.existsById(genreId)) {
+            throw new ResourceNotFoundException("Genre with ID " + genreId + " does not exist");
+        }
+
+        Pageable pageable = page == null ? Pageable.unpaged() : PageRequest.of(page, size);
+        List<MovieSummary> summaries = movieRepository
+                .findSummaries(genreId, included.contains("genres"), included.contains("actors"), pageable).stream()
+                .map(view -> MovieSummary.of(view, included))
+                .toList();
+
+        if (summaries.isEmpty()) {
+            throw new ResourceNotFoundException(page == null ? "No movies found" : "No movies found on page " + page);
+        }
+        return Optional.of(summaries);
+    }
+
+    // get movies after the given cursor, seeks on the id so deep pages cost the same as the first one
+    @Transactional(readOnly = true)
+    public Optional<CursorPage<Movie>> getMoviesAfter(String after, int size) {
+        Slice<Movie> moviesSlice = movieRepository.findAllAfter(CursorPage.decode(after), PageRequest.ofSize(size));
+        movieRepository.fetchRelations(moviesSlice.getContent());
+        if (moviesSlice.isEmpty()) {
+            throw new ResourceNotFoundException("No movies found after cursor '" + after + "'");
+        }
+        return Optional.of(CursorPage.of(moviesSlice, Movie::getId));
+    }
+
     // get movies by release year
+    @Transactional(readOnly = true)
     public Optional<List<Movie>> getMoviesByReleaseYear(int releaseYear) {
-        List<Movie> moviesList = movieRepository.findAll();
+        List<Movie> moviesList = movieRepository.fetchRelations(movieRepository.findAllByReleaseYear(releaseYear));
 
-        return Optional.ofNullable(Optional.of(moviesList.stream()
-                        .filter(movie -> movie.getReleaseYear() == releaseYear)
-                        .collect(Collectors.toList()))
+        return Optional.ofNullable(Optional.of(moviesList)
                         .filter(list -> !list.isEmpty())
                 .orElseThrow(() -> new ResourceNotFoundException("No movies found with release year " + releaseYear)));
 
     }
 
+    // get movies released between two years by page and page size
+    @Transactional(readOnly = true)
+    public Optional<List<Movie>> getMoviesByReleaseYearRange(int releaseYearFrom, int releaseYearTo, int page, int size) {
+        if (releaseYearFrom > releaseYearTo) {
+            throw new IllegalArgumentException("Release year range start must not be after its end");
+        }
+
+        PageRequest pageable = PageRequest.of(page, size);
+        List<Movie> moviesList = movieRepository.fetchRelations(
+                movieRepository.findAllByReleaseYearBetween(releaseYearFrom, releaseYearTo, pageable).getContent());
+
+        if (moviesList.isEmpty()) {
+            throw new ResourceNotFoundException("No movies found released between " + releaseYearFrom + " and " + releaseYearTo + " on page " + page);
+        }
+        return Optional.of(moviesList);
+    }
+
+    // get the version of a movie for conditional requests, cheaper than loading the movie and its relations
+    // cached like the movie and evicted with it, so a repeated conditional request does not read the database
+    @Cacheable(cacheNames = MOVIE_VERSIONS, key = "#movieId")
+    @Transactional(readOnly = true)
+    public EntityVersion getMovieVersion(Long movieId) {
+        return movieRepository.findVersionById(movieId)
+                .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist"));
+    }
+
     // get movies by id
+    @Cacheable(cacheNames = MOVIES, key = "#movieId")
+    @Transactional(readOnly = true)
     public Optional<Movie> getMovieById(Long movieId) {
         Optional<Movie> movie= movieRepository.findById(movieId);
         if (movie.isPresent()) {
+            movieRepository.fetchRelations(List.of(movie.get()));
             return movie;
         } else {
             throw new ResourceNotFoundException("Movie with ID " + movieId + " does not exist");
@@ -89,10 +185,12 @@ public class MovieService {
         };
     }
 
-    // filter movies by title
+    // filter movies by title, ranked full-text search where each word matches the start of a word in the title
+    @Transactional(readOnly = true)
     public Optional<List<Movie>> findMoviesByTitle(String title) {
-        Specification<Movie> spec = titleContains(title);
-        List<Movie> moviesList = movieRepository.findAll(spec);
+        List<Movie> moviesList = movieRepository.fetchRelations(FullTextQuery.of(title)
+                .map(movieRepository::searchByTitle)
+                .orElseGet(() -> movieRepository.findAll(titleContains(title)))); // no words given
 
         return Optional.ofNullable(Optional.of(moviesList)
                 .filter(list -> !list.isEmpty())
@@ -101,8 +199,9 @@ public class MovieService {
     }
 
     // finds actors associated to movie
+    @Cacheable(cacheNames = MOVIE_ACTORS, key = "#movieId")
     public Optional<Set<Actor>> getActorsInMovie(Long movieId) {
-        Movie movie = movieRepository.findById(movieId)
+        Movie movie = movieRepository.findWithActorsById(movieId)
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist"));
 
         Set<Actor> actorsInMovie = movie.getActors();
@@ -114,8 +213,9 @@ public class MovieService {
     }
 
     // finds genres associated to movie
+    @Cacheable(cacheNames = MOVIE_GENRES, key = "#movieId")
     public Optional<Set<Genre>> getGenresInMovie(Long movieId) {
-        Movie movie = movieRepository.findById(movieId)
+        Movie movie = movieRepository.findWithGenresById(movieId)
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist"));
 
         Set<Genre> genresInMovie = movie.getGenres();
@@ -127,44 +227,76 @@ public class MovieService {
     }
 
     // add movie
+    @Transactional
     public ResponseEntity<String> addMovie(Movie movie) {
-        Optional<Movie> movieOptional = movieRepository
-                .findByTitle(movie.getTitle());
+        List<String> missing = new ArrayList<>();
+        Set<Genre> genres = resolveGenres(movie.getGenres(), missing);
+        Set<Actor> actors = resolveActors(movie.getActors(), missing);
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException(missing);
+        }
 
-        if(movieOptional.isPresent()) {
-            throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' already exists");
+        movie.setGenres(genres);
+        movie.setActors(actors);
+
+        // the unique index on the title detects duplicates, flushed here so the conflict surfaces as a 409
+        try {
+            movieRepository.saveAndFlush(movie);
+        } catch (DataIntegrityViolationException exception) {
+            if (!SqliteDialect.isUniqueViolation(exception, "movie.title")) {
+                throw exception;
             }
+            throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' already exists");
+        }
+        counterService.movieAdded(movie);
+        return new ResponseEntity<>("Movie '" + movie.getTitle() + "' added successfully", HttpStatus.CREATED);
+    }
 
-        Set<Genre> genres = movie.getGenres().stream()
-                .map(genre -> genreRepository.findByName(genre.getName())
-                        .orElseThrow(() -> new ResourceNotFoundException("Genre '" + genre.getName() + "' not found")))
-                .collect(Collectors.toSet());
 
-        Set<Actor> actors = movie.getActors().stream()
-                .map(actor -> actorRepository.findByName(actor.getName())
-                        .orElseThrow(() -> new ResourceNotFoundException("Actor '" + actor.getName() + "' not found")))
-                .collect(Collectors.toSet());
+    // look up the genres of a payload by name with a single query, names that don't exist are added to missing
+    private Set<Genre> resolveGenres(Set<Genre> genres, List<String> missing) {
+        Set<String> names = genres.stream().map(Genre::getName).collect(Collectors.toSet());
+        if (names.isEmpty()) {
+            return new HashSet<>();
+        }
 
-        movie.setGenres(genres);
-        movie.setActors(actors);
+        Set<Genre> found = new HashSet<>(genreRepository.findAllByNameIn(names));
+        found.forEach(genre -> names.remove(genre.getName()));
+        names.forEach(name -> missing.add("Genre '" + name + "' not found"));
+        return found;
+    }
 
-        movieRepository.save(movie);
-        return new ResponseEntity<>("Movie '" + movie.getTitle() + "' added successfully", HttpStatus.CREATED);
+    // look up the actors of a payload by name with a single query, names that don't exist are added to missing
+    private Set<Actor> resolveActors(Set<Actor> actors, List<String> missing) {
+        Set<String> names = actors.stream().map(Actor::getName).collect(Collectors.toSet());
+        if (names.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Set<Actor> found = new HashSet<>(actorRepository.findAllByNameIn(names));
+        found.forEach(actor -> names.remove(actor.getName()));
+        names.forEach(name -> missing.add("Actor '" + name + "' not found"));
+        return found;
     }
 
 
+    // remove movie
+    // without force the relationships are counted on the join tables, the actors and genres are never loaded
     @Transactional
     public void deleteMovie(Long movieId, boolean force) {
         Movie movie = movieRepository.findById(movieId)
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist"));
 
+        cacheService.evictMovie(movieId);
+
         if (force) { // if force is true then delete resource regardless of relationships
+            counterService.movieRemoved(movie);
             movieRepository.deleteById(movieId);
             return;
         }
 
-        int numOfActors = movie.getActors().size();
-        int numOfGenres = movie.getGenres().size();
+        long numOfActors = movieRepository.countActorsByMovieId(movieId);
+        long numOfGenres = movieRepository.countGenresByMovieId(movieId);
 
         if (numOfActors > 0 && numOfGenres > 0) { // if force is false and relationships exist then return exception
             throw new IllegalStateException(("Cannot delete movie '" + movie.getTitle() + "' because they are associated with " + numOfGenres + " genre(s) and " +  numOfActors + " actor(s)"));
@@ -176,16 +308,31 @@ public class MovieService {
             throw new IllegalStateException(("Cannot delete movie '" + movie.getTitle() + "' because they are associated with " + numOfGenres + " genre(s)"));
         }
 
+        counterService.movieRemoved(movie.getReleaseYear(), Set.of()); // the movie has no genres
         movieRepository.deleteById(movieId); // if force is false and relationships do not exist then delete resource
 
     }
 
 
     // update movie
+    // actors and genres are compared by id with the rows of the join tables, only added and removed pairs are written
     @Transactional
-    public void updateMovie(Long movieId, String title, int releaseYear, int duration, Set<Genre> genres, Set<Actor> actors ) {
+    public void updateMovie(Long movieId, String title, int releaseYear, int duration, Set<Genre> genres, Set<Actor> actors,
+                            String ifMatch) {
         Movie movie = movieRepository.findById(movieId)
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist in database"));
+        new EntityVersion(movie.getVersion(), movie.getUpdatedAt()).checkIfMatch(ifMatch, "Movie with ID " + movieId);
+        cacheService.evictMovie(movieId);
+        int oldReleaseYear = movie.getReleaseYear();
+        Set<Long> oldGenreIds = movieRelationService.findGenreIds(movieId);
+        Set<Long> oldActorIds = movieRelationService.findActorIds(movieId);
+
+        List<String> missing = new ArrayList<>();
+        Set<Long> genreIds = ids(resolveGenres(genres, missing), Genre::getId);
+        Set<Long> actorIds = ids(resolveActors(actors, missing), Actor::getId);
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException(missing);
+        }
 
         if (title != null && !title.isEmpty()) { // update only non-null fields
             movie.setTitle(title);
@@ -199,33 +346,31 @@ public class MovieService {
             movie.setDuration(duration);
         }
 
-        genres = genres.stream()
-                .map(genre -> genreRepository.findByName(genre.getName())
-                        .orElseThrow(() -> new ResourceNotFoundException("Genre '" + genre.getName() + "' not found")))
-                .collect(Collectors.toSet());
-
-        actors = actors.stream()
-                .map(actor -> actorRepository.findByName(actor.getName())
-                        .orElseThrow(() -> new ResourceNotFoundException("Actor '" + actor.getName() + "' not found")))
-                .collect(Collectors.toSet());
-
-        if (!genres.isEmpty()) {
-            movie.getGenres().retainAll(genres); // remove genres not in the new list
-            movie.getGenres().addAll(genres); // add genres in the new list
-        } else {
-            movie.setGenres(genres); // assign genres directly
+        // the movie's own sets are left alone, so the row still has to change for a new version when only relations change
+        if (!genreIds.equals(oldGenreIds) || !actorIds.equals(oldActorIds)) {
+            movie.setUpdatedAt(Instant.now());
         }
 
-        if (!actors.isEmpty()) {
-            movie.getActors().retainAll(actors); // remove actors not in the new list
-            movie.getActors().addAll(actors); // add actors in the new list
-        } else {
-            movie.setActors(actors); // assign actors directly
+        try {
+            movieRepository.flush();
+        } catch (DataIntegrityViolationException exception) {
+            if (!SqliteDialect.isUniqueViolation(exception, "movie.title")) {
+                throw exception;
+            }
+            throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' already exists");
         }
+        movieRelationService.writeGenres(movieId, oldGenreIds, genreIds);
+        movieRelationService.writeActors(movieId, oldActorIds, actorIds);
+        counterService.movieChanged(oldReleaseYear, oldGenreIds, movie.getReleaseYear(), genreIds);
+    }
+
+    private static <T> Set<Long> ids(Set<T> entities, Function<T, Long> id) {
+        return entities.stream().map(id).collect(Collectors.toSet());
     }
 
 
     // assign genres to movies
+    @Transactional
     public Movie assignGenresToMovies(Long movieId, Long genreId) {
         Movie movie = movieRepository.findById(movieId) // check movie with that id exists in database
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist in database"));
@@ -235,12 +380,17 @@ public class MovieService {
         if (movie.getGenres().contains(genre)) { // check movie has a relationship with genre
             throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' is already associated with genre '" + genre.getName() + "'");
         } else {
+            Set<Long> oldGenreIds = CounterService.genreIds(movie);
             movie.setGenre(genre);
+            counterService.movieChanged(movie.getReleaseYear(), oldGenreIds, movie);
+            cacheService.evictMovie(movieId); // the changed collection also changes the version of the movie
+            movieRepository.fetchRelations(List.of(movie)); // returned movie is serialized after the transaction
             return movieRepository.save(movie);
         }
     }
 
     // remove genres from movies
+    @Transactional
     public void removeGenreFromMovie(Long movieId, Long genreId) {
         Movie movie = movieRepository.findById(movieId) // check movie with that id exists in database
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist in database"));
@@ -250,12 +400,16 @@ public class MovieService {
         if (!movie.getGenres().contains(genre)) { // check movie has a relationship with genre
             throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' is not associated with genre '" + genre.getName() + "'");
         } else {
+            Set<Long> oldGenreIds = CounterService.genreIds(movie);
             movie.removeGenre(genre);
+            counterService.movieChanged(movie.getReleaseYear(), oldGenreIds, movie);
+            cacheService.evictMovie(movieId); // the changed collection also changes the version of the movie
             movieRepository.save(movie);
         }
     }
 
     // assign actors to movies
+    @Transactional
     public Movie assignActorToMovie(Long movieId, Long actorId) {
         Movie movie = movieRepository.findById(movieId) // check movie with that id exists in database
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist in database"));
@@ -266,11 +420,14 @@ public class MovieService {
             throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' is already associated with actor '" + actor.getName() + "'");
         } else {
             movie.setActor(actor);
+            cacheService.evictMovie(movieId); // the changed collection also changes the version of the movie
+            movieRepository.fetchRelations(List.of(movie)); // returned movie is serialized after the transaction
             return movieRepository.save(movie);
         }
     }
 
     // remove actors from movies
+    @Transactional
     public void removeActorFromMovie(Long movieId, Long actorId) {
         Movie movie = movieRepository.findById(movieId) // check movie with that id exists in database
                 .orElseThrow(() -> new ResourceNotFoundException("Movie with ID " + movieId + " does not exist in database"));
@@ -281,6 +438,7 @@ public class MovieService {
             throw new ResourceAlreadyExistsException("Movie '" + movie.getTitle() + "' is not associated with actor '" + actor.getName() + "'");
         } else {
             movie.removeActor(actor);
+            cacheService.evictMovie(movieId); // the changed collection also changes the version of the movie
             movieRepository.save(movie);
         }
     }
@@ -0,0 +1,26 @@
+package kmdb.movies_api.services;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+// sort order of movie listings given as a field and an optional direction, e.g. "releaseYear,desc"
+// ties are broken by id so pages and cursors are stable
+final class MovieSort {
+
+    static final List<String> FIELDS = List.of("id", "title", "releaseYear", "duration");
+
+    private MovieSort() {
+    }
+
+    static Sort of(String sort) {
+        String[] parts = sort.split(",", 2);
+        String field = parts[0].trim();
+        if (!FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Cannot sort movies by '" + field + "', expected any of " + FIELDS);
+        }
+        Sort.Direction direction = parts.length == 1 ? Sort.Direction.ASC : Sort.Direction.fromOptionalString(parts[1].trim())
+                .orElseThrow(() -> new IllegalArgumentException("Sort direction must be asc or desc"));
+        return field.equals("id") ? Sort.by(direction, "id") : Sort.by(direction, field).and(Sort.by(direction, "id"));
+    }
+}
@@ -0,0 +1,50 @@
+package kmdb.movies_api.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import kmdb.movies_api.config.SqliteConnectionPool;
+import kmdb.movies_api.dto.CacheStats;
+import kmdb.movies_api.dto.PoolStats;
+import kmdb.movies_api.exceptions.ResourceNotFoundException;
+import lombok.AllArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@AllArgsConstructor
+public class StatsService {
+
+    private final DataSource dataSource;
+    private final CacheManager cacheManager;
+
+    // get connection pool statistics
+    public Optional<List<PoolStats>> getPoolStats() {
+        try {
+            if (!dataSource.isWrapperFor(SqliteConnectionPool.class)) { // the pool may be wrapped by QueryCountingDataSource
+                throw new ResourceNotFoundException("Connection pooling is disabled");
+            }
+            return Optional.of(dataSource.unwrap(SqliteConnectionPool.class).getStats());
+        } catch (SQLException exception) {
+            throw new IllegalStateException("Cannot read connection pool statistics", exception);
+        }
+    }
+
+    // get hit, miss and eviction counts of the entity caches
+    public Optional<List<CacheStats>> getCacheStats() {
+        return Optional.of(cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(name -> (CaffeineCache) cacheManager.getCache(name))
+                .map(cache -> {
+                    Cache<Object, Object> nativeCache = cache.getNativeCache();
+                    com.github.benmanes.caffeine.cache.stats.CacheStats stats = nativeCache.stats();
+                    return new CacheStats(cache.getName(), nativeCache.estimatedSize(),
+                            stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+                })
+                .toList());
+    }
+}
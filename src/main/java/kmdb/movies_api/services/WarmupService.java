@@ -0,0 +1,160 @@
+package kmdb.movies_api.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import kmdb.movies_api.exceptions.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static kmdb.movies_api.config.CacheConfig.*;
+
+// fills the entity caches at startup with the entries that were hottest before the last shutdown
+// the hottest keys of every cache, as ranked by Caffeine's eviction policy, are written to a snapshot file
+// in the background and on shutdown; at startup they are loaded through the cached service methods on parallel threads
+// the runner blocks until the warmup is done, Spring only reports the application ready
+// (readiness state ACCEPTING_TRAFFIC, /actuator/health/readiness UP) after all runners returned
+@Service
+@Slf4j
+public class WarmupService implements ApplicationRunner {
+
+    private static final TypeReference<Map<String, List<Long>>> SNAPSHOT = new TypeReference<>() {
+    };
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Function<Long, ?>> loaders;
+
+    private final boolean enabled;
+    private final Path snapshotFile;
+    private final int size;
+    private final int threads;
+    private final Duration timeout;
+
+    public WarmupService(CacheManager cacheManager, ObjectMapper objectMapper, MovieService movieService,
+                         ActorService actorService, GenreService genreService, Environment env) {
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        // the cached service methods, so warmed entries are exactly what a request would have cached
+        this.loaders = Map.of(
+                MOVIES, movieService::getMovieById,
+                ACTORS, actorService::getActorById,
+                GENRES, genreService::getGenreById,
+                MOVIE_ACTORS, movieService::getActorsInMovie,
+                MOVIE_GENRES, movieService::getGenresInMovie,
+                MOVIE_VERSIONS, movieService::getMovieVersion);
+        this.enabled = env.getProperty("kmdb.warmup.enabled", Boolean.class, true);
+        this.snapshotFile = Path.of(env.getProperty("kmdb.warmup.snapshot-file", "kmdb-warmup.json"));
+        this.size = env.getProperty("kmdb.warmup.size", Integer.class, 1000);
+        this.threads = env.getProperty("kmdb.warmup.threads", Integer.class, 4);
+        this.timeout = env.getProperty("kmdb.warmup.timeout", Duration.class, Duration.ofMinutes(1));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (!enabled || !Files.exists(snapshotFile)) {
+            return;
+        }
+        Map<String, List<Long>> snapshot;
+        try {
+            snapshot = objectMapper.readValue(snapshotFile.toFile(), SNAPSHOT);
+        } catch (IOException exception) { // a broken snapshot only costs the warmup
+            log.warn("Cannot read warmup snapshot {}, starting cold", snapshotFile, exception);
+            return;
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger loaded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("kmdb-warmup-", 1).factory());
+        snapshot.forEach((cacheName, ids) -> {
+            Function<Long, ?> loader = loaders.get(cacheName);
+            if (loader == null) {
+                return;
+            }
+            ids.stream().limit(size).forEach(id -> executor.execute(() -> {
+                try {
+                    loader.apply(id);
+                    loaded.incrementAndGet();
+                } catch (ResourceNotFoundException exception) { // deleted since the snapshot was taken
+                } catch (RuntimeException exception) { // the entry is loaded on first use, the failure is reported below
+                    failed.incrementAndGet();
+                    firstFailure.compareAndSet(null, exception);
+                }
+            }));
+        });
+        executor.shutdown();
+        if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+            log.warn("Warmup did not finish within {}, the remaining entries are loaded on first use", timeout);
+        }
+        if (failed.get() > 0) {
+            log.warn("Warmup could not load {} cache entries, they are loaded on first use. First failure:", failed.get(), firstFailure.get());
+        }
+        log.info("Warmed up {} cache entries in {} ms", loaded.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // written behind, off the request path; an idle application keeps the last snapshot that had entries
+    @Scheduled(fixedDelayString = "${kmdb.warmup.snapshot-interval:PT1M}",
+            initialDelayString = "${kmdb.warmup.snapshot-interval:PT1M}")
+    @PreDestroy
+    public void saveSnapshot() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, List<Long>> snapshot = new TreeMap<>();
+        for (String cacheName : loaders.keySet()) {
+            List<Long> hottest = hottestKeys(cacheName);
+            if (!hottest.isEmpty()) {
+                snapshot.put(cacheName, hottest);
+            }
+        }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        // written next to the snapshot and moved over it, so a crash never leaves half a file
+        try {
+            Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            objectMapper.writeValue(temporary.toFile(), snapshot);
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            log.warn("Cannot write warmup snapshot {}", snapshotFile, exception);
+        }
+    }
+
+    // keys in the order Caffeine would keep them, most frequently and recently used first
+    private List<Long> hottestKeys(String cacheName) {
+        if (!(cacheManager.getCache(cacheName) instanceof CaffeineCache cache)) {
+            return List.of();
+        }
+        List<Long> keys = new ArrayList<>();
+        cache.getNativeCache().policy().eviction().ifPresent(eviction ->
+                eviction.hottest(size).forEach((key, value) -> {
+                    if (key instanceof Long id) {
+                        keys.add(id);
+                    }
+                }));
+        return keys;
+    }
+}
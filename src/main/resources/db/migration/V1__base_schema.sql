@@ -0,0 +1,41 @@
+-- Tables as created by Hibernate, so a new database gets the same schema before the later migrations run.
+-- An existing database is baselined at version 0 and these statements do nothing.
+
+CREATE TABLE IF NOT EXISTS movie (
+    id bigint not null,
+    duration integer not null check ((duration>=0) and (duration<=1000)),
+    release_year integer not null check ((release_year<=2300) and (release_year>=0)),
+    title varchar(255) not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS actor (
+    id bigint not null,
+    birth_date VARCHAR(10),
+    name varchar(255) not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS genre (
+    id bigint not null,
+    name varchar(255) not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS actors (
+    movie_id bigint not null,
+    actor_id bigint not null,
+    primary key (movie_id, actor_id)
+);
+
+CREATE TABLE IF NOT EXISTS genres (
+    movie_id bigint not null,
+    genre_id bigint not null,
+    primary key (movie_id, genre_id)
+);
+
+CREATE TABLE IF NOT EXISTS movie_sequence (next_val bigint);
+CREATE TABLE IF NOT EXISTS actor_sequence (next_val bigint);
+CREATE TABLE IF NOT EXISTS genre_sequence (next_val bigint);
+
+CREATE INDEX IF NOT EXISTS idx_movie_release_year ON movie (release_year);
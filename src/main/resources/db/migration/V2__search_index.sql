@@ -0,0 +1,61 @@
+-- Full-text indexes for the /search endpoints. They are external content tables, so they only store the index and
+-- read the text from movie, actor and genre. The triggers keep them in sync on every insert, update and delete.
+
+CREATE VIRTUAL TABLE movie_search USING fts5(
+    title, content = 'movie', content_rowid = 'id', tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+);
+
+CREATE TRIGGER movie_search_insert AFTER INSERT ON movie BEGIN
+    INSERT INTO movie_search (rowid, title) VALUES (new.id, new.title);
+END;
+
+CREATE TRIGGER movie_search_delete AFTER DELETE ON movie BEGIN
+    INSERT INTO movie_search (movie_search, rowid, title) VALUES ('delete', old.id, old.title);
+END;
+
+CREATE TRIGGER movie_search_update AFTER UPDATE OF title ON movie BEGIN
+    INSERT INTO movie_search (movie_search, rowid, title) VALUES ('delete', old.id, old.title);
+    INSERT INTO movie_search (rowid, title) VALUES (new.id, new.title);
+END;
+
+INSERT INTO movie_search (movie_search) VALUES ('rebuild');
+
+
+CREATE VIRTUAL TABLE actor_search USING fts5(
+    name, content = 'actor', content_rowid = 'id', tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+);
+
+CREATE TRIGGER actor_search_insert AFTER INSERT ON actor BEGIN
+    INSERT INTO actor_search (rowid, name) VALUES (new.id, new.name);
+END;
+
+CREATE TRIGGER actor_search_delete AFTER DELETE ON actor BEGIN
+    INSERT INTO actor_search (actor_search, rowid, name) VALUES ('delete', old.id, old.name);
+END;
+
+CREATE TRIGGER actor_search_update AFTER UPDATE OF name ON actor BEGIN
+    INSERT INTO actor_search (actor_search, rowid, name) VALUES ('delete', old.id, old.name);
+    INSERT INTO actor_search (rowid, name) VALUES (new.id, new.name);
+END;
+
+INSERT INTO actor_search (actor_search) VALUES ('rebuild');
+
+
+CREATE VIRTUAL TABLE genre_search USING fts5(
+    name, content = 'genre', content_rowid = 'id', tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+);
+
+CREATE TRIGGER genre_search_insert AFTER INSERT ON genre BEGIN
+    INSERT INTO genre_search (rowid, name) VALUES (new.id, new.name);
+END;
+
+CREATE TRIGGER genre_search_delete AFTER DELETE ON genre BEGIN
+    INSERT INTO genre_search (genre_search, rowid, name) VALUES ('delete', old.id, old.name);
+END;
+
+CREATE TRIGGER genre_search_update AFTER UPDATE OF name ON genre BEGIN
+    INSERT INTO genre_search (genre_search, rowid, name) VALUES ('delete', old.id, old.name);
+    INSERT INTO genre_search (rowid, name) VALUES (new.id, new.name);
+END;
+
+INSERT INTO genre_search (genre_search) VALUES ('rebuild');
@@ -0,0 +1,10 @@
+-- Unique lookup indexes for the name and title checks done on every add, and reverse indexes on the join tables.
+-- The join table primary keys start with movie_id, so listing the movies of an actor or genre scanned the whole table.
+-- The unique indexes also enforce that names and titles are unique, the services rely on them to detect duplicates.
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_movie_title ON movie (title);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_actor_name ON actor (name);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_genre_name ON genre (name);
+
+CREATE INDEX IF NOT EXISTS idx_actors_actor_id ON actors (actor_id);
+CREATE INDEX IF NOT EXISTS idx_genres_genre_id ON genres (genre_id);
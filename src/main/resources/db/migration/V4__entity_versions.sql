@@ -0,0 +1,14 @@
+-- Version and last change time of movies, actors and genres for ETags, Last-Modified and If-Match.
+-- Times are stored as epoch milliseconds like the driver binds them, existing rows count as changed now.
+
+ALTER TABLE movie ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE movie ADD COLUMN updated_at timestamp;
+UPDATE movie SET updated_at = CAST(strftime('%s', 'now') AS INTEGER) * 1000;
+
+ALTER TABLE actor ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE actor ADD COLUMN updated_at timestamp;
+UPDATE actor SET updated_at = CAST(strftime('%s', 'now') AS INTEGER) * 1000;
+
+ALTER TABLE genre ADD COLUMN version bigint NOT NULL DEFAULT 0;
+ALTER TABLE genre ADD COLUMN updated_at timestamp;
+UPDATE genre SET updated_at = CAST(strftime('%s', 'now') AS INTEGER) * 1000;
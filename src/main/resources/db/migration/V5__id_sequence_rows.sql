@@ -0,0 +1,6 @@
+-- The single row of every id sequence table, which BlockSequenceGenerator only updates.
+-- Databases created by Hibernate already have it, a new database starts after the highest stored id.
+
+INSERT INTO movie_sequence (next_val) SELECT (SELECT coalesce(max(id), 0) + 1 FROM movie) WHERE NOT EXISTS (SELECT 1 FROM movie_sequence);
+INSERT INTO actor_sequence (next_val) SELECT (SELECT coalesce(max(id), 0) + 1 FROM actor) WHERE NOT EXISTS (SELECT 1 FROM actor_sequence);
+INSERT INTO genre_sequence (next_val) SELECT (SELECT coalesce(max(id), 0) + 1 FROM genre) WHERE NOT EXISTS (SELECT 1 FROM genre_sequence);
@@ -0,0 +1,152 @@
+package kmdb.movies_api;
+
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// ETag and Last-Modified on single resources, 304 for If-None-Match and 412 for an outdated If-Match
+@SpringBootTest(properties = { "kmdb.query-count.enforce-budget=true", "kmdb.warmup.enabled=false" })
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ConditionalRequestTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private GenreRepository genreRepository;
+
+	// a new database for every run, kmdb.db is left alone
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) throws IOException {
+		Path file = Files.createTempFile("kmdb-test", ".db");
+		file.toFile().deleteOnExit();
+		registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + file);
+	}
+
+	// every test changes its own movie
+	@BeforeAll
+	void importCatalogue() throws Exception {
+		importRows("/api/genres/import", "[{\"name\": \"Drama\"}, {\"name\": \"Crime\"}]");
+		importRows("/api/actors/import", "[{\"name\": \"Actor 1\"}]");
+		importRows("/api/movies/import", IntStream.rangeClosed(1, 4)
+				.mapToObj(i -> "{\"title\": \"Movie " + i + "\", \"releaseYear\": 2000, \"duration\": 120,"
+						+ " \"genres\": [{\"name\": \"" + (i == 4 ? "Crime" : "Drama") + "\"}], \"actors\": [{\"name\": \"Actor 1\"}]}")
+				.collect(Collectors.joining(",", "[", "]")));
+	}
+
+	private void importRows(String path, String rows) throws Exception {
+		mockMvc.perform(post(path).contentType(MediaType.APPLICATION_JSON).content(rows))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"errors\":[]")));
+	}
+
+	private long movieId(String title) {
+		return movieRepository.findByTitle(title).orElseThrow().getId();
+	}
+
+	private String eTag(String uri) throws Exception {
+		return mockMvc.perform(get(uri))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
+	private static String update(String title) {
+		return "{\"title\": \"" + title + "\", \"releaseYear\": 2000, \"duration\": 120,"
+				+ " \"genres\": [{\"name\": \"Drama\"}], \"actors\": [{\"name\": \"Actor 1\"}]}";
+	}
+
+	@Test
+	void currentETagIsNotModified() throws Exception {
+		String uri = "/api/movies/" + movieId("Movie 1");
+		String eTag = eTag(uri);
+		assertThat(eTag).isNotNull();
+
+		mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+		mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, "\"-1\""))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.title").value("Movie 1"));
+	}
+
+	@Test
+	void updateWithOutdatedETagFails() throws Exception {
+		String uri = "/api/movies/" + movieId("Movie 2");
+		String eTag = eTag(uri);
+
+		mockMvc.perform(patch(uri).header(HttpHeaders.IF_MATCH, eTag)
+						.contentType(MediaType.APPLICATION_JSON).content(update("Movie 2 renamed")))
+				.andExpect(status().isOk());
+		String newETag = eTag(uri);
+		assertThat(newETag).isNotEqualTo(eTag);
+
+		mockMvc.perform(patch(uri).header(HttpHeaders.IF_MATCH, eTag)
+						.contentType(MediaType.APPLICATION_JSON).content(update("Movie 2 lost update")))
+				.andExpect(status().isPreconditionFailed())
+				.andExpect(content().string(containsString("Movie with ID " + movieId("Movie 2 renamed") + " has been changed")));
+		mockMvc.perform(get(uri))
+				.andExpect(jsonPath("$.title").value("Movie 2 renamed"));
+	}
+
+	@Test
+	void updateThatChangesNothingKeepsETag() throws Exception {
+		String uri = "/api/movies/" + movieId("Movie 3");
+		String eTag = eTag(uri);
+
+		mockMvc.perform(patch(uri).header(HttpHeaders.IF_MATCH, eTag)
+						.contentType(MediaType.APPLICATION_JSON).content(update("Movie 3")))
+				.andExpect(status().isOk());
+		assertThat(eTag(uri)).isEqualTo(eTag);
+	}
+
+	// movies embed their genres, so renaming a genre changes the version of its movies
+	@Test
+	void renamingGenreChangesMovieETag() throws Exception {
+		String movieUri = "/api/movies/" + movieId("Movie 4");
+		String genreUri = "/api/genres/" + genreRepository.findAllByNameIn(Set.of("Crime")).get(0).getId();
+		String movieETag = eTag(movieUri);
+		String genreETag = eTag(genreUri);
+
+		mockMvc.perform(patch(genreUri).header(HttpHeaders.IF_MATCH, "\"-1\"")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"Thriller\"}"))
+				.andExpect(status().isPreconditionFailed());
+		mockMvc.perform(patch(genreUri).header(HttpHeaders.IF_MATCH, genreETag)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"Thriller\"}"))
+				.andExpect(status().isOk());
+
+		assertThat(eTag(movieUri)).isNotEqualTo(movieETag);
+		mockMvc.perform(get(movieUri + "/genres").header(HttpHeaders.IF_NONE_MATCH, movieETag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].name").value("Thriller"));
+	}
+}
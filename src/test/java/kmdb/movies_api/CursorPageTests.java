@@ -0,0 +1,87 @@
+package kmdb.movies_api;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// keyset pagination, following nextCursor visits every movie once and in id order
+@SpringBootTest(properties = { "kmdb.query-count.enforce-budget=true", "kmdb.warmup.enabled=false" })
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CursorPageTests {
+
+	private static final int MOVIES = 25;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	// a new database for every run, kmdb.db is left alone
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) throws IOException {
+		Path file = Files.createTempFile("kmdb-test", ".db");
+		file.toFile().deleteOnExit();
+		registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + file);
+	}
+
+	@BeforeAll
+	void importCatalogue() throws Exception {
+		mockMvc.perform(post("/api/movies/import").contentType(MediaType.APPLICATION_JSON).content(IntStream.rangeClosed(1, MOVIES)
+						.mapToObj(i -> "{\"title\": \"Movie " + i + "\", \"releaseYear\": 2000, \"duration\": 120}")
+						.collect(Collectors.joining(",", "[", "]"))))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"errors\":[]")));
+	}
+
+	@Test
+	void cursorsVisitEveryMovieOnce() throws Exception {
+		List<Integer> ids = new ArrayList<>();
+		String cursor = "";
+		int slices = 0;
+		do {
+			String body = mockMvc.perform(get("/api/movies").param("after", cursor).param("size", "10"))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString();
+			ids.addAll(JsonPath.read(body, "$.content[*].id"));
+			cursor = JsonPath.read(body, "$.nextCursor");
+			slices++;
+		} while (cursor != null);
+
+		assertThat(slices).isEqualTo(3);
+		assertThat(ids).hasSize(MOVIES).doesNotHaveDuplicates().isSorted();
+	}
+
+	@Test
+	void tamperedCursorIsRejected() throws Exception {
+		String notACursor = Base64.getUrlEncoder().withoutPadding().encodeToString("title:x".getBytes(StandardCharsets.UTF_8));
+		for (String cursor : List.of("not base64!", notACursor)) {
+			mockMvc.perform(get("/api/movies").param("after", cursor).param("size", "10"))
+					.andExpect(status().isBadRequest())
+					.andExpect(content().string(containsString("Invalid cursor")));
+		}
+	}
+}
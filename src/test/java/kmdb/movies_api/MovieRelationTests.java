@@ -0,0 +1,191 @@
+package kmdb.movies_api;
+
+import kmdb.movies_api.dto.RelationChanges;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// bulk changes of movie actors and genres, only the pairs that change are written and counted
+@SpringBootTest(properties = { "kmdb.query-count.enforce-budget=true", "kmdb.warmup.enabled=false" })
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MovieRelationTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private ActorRepository actorRepository;
+
+	@Autowired
+	private GenreRepository genreRepository;
+
+	// a new database for every run, kmdb.db is left alone
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) throws IOException {
+		Path file = Files.createTempFile("kmdb-test", ".db");
+		file.toFile().deleteOnExit();
+		registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + file);
+	}
+
+	// movies without actors or genres, every test changes its own movie
+	@BeforeAll
+	void importCatalogue() throws Exception {
+		importRows("/api/genres/import", "[{\"name\": \"Drama\"}, {\"name\": \"Crime\"}]");
+		importRows("/api/actors/import", "[{\"name\": \"Actor 1\"}, {\"name\": \"Actor 2\"}, {\"name\": \"Actor 3\"}]");
+		importRows("/api/movies/import", IntStream.rangeClosed(1, 6)
+				.mapToObj(i -> "{\"title\": \"Movie " + i + "\", \"releaseYear\": 2000, \"duration\": 120}")
+				.collect(Collectors.joining(",", "[", "]")));
+	}
+
+	private void importRows(String path, String rows) throws Exception {
+		mockMvc.perform(post(path).contentType(MediaType.APPLICATION_JSON).content(rows))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"errors\":[]")));
+	}
+
+	private long movieId(String title) {
+		return movieRepository.findByTitle(title).orElseThrow().getId();
+	}
+
+	private long actorId(String name) {
+		return actorRepository.findAllByNameIn(Set.of(name)).get(0).getId();
+	}
+
+	private long genreId(String name) {
+		return genreRepository.findAllByNameIn(Set.of(name)).get(0).getId();
+	}
+
+	private ResultActions perform(MockHttpServletRequestBuilder request, String body) throws Exception {
+		return mockMvc.perform(request.contentType(MediaType.APPLICATION_JSON).content(body));
+	}
+
+	@Test
+	void pairsAreAddedOnce() throws Exception {
+		long movie = movieId("Movie 1");
+		String body = "{\"add\": [{\"movieId\": " + movie + ", \"actorId\": " + actorId("Actor 1") + "},"
+				+ " {\"movieId\": " + movie + ", \"actorId\": " + actorId("Actor 2") + "}]}";
+
+		perform(patch("/api/movies/actors"), body)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.added").value(2))
+				.andExpect(jsonPath("$.removed").value(0));
+		perform(patch("/api/movies/actors"), body)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.added").value(0));
+		assertThat(movieRepository.countActorsByMovieId(movie)).isEqualTo(2);
+	}
+
+	@Test
+	void onlyExistingPairsAreRemoved() throws Exception {
+		long movie = movieId("Movie 2");
+		String pair = "{\"movieId\": " + movie + ", \"genreId\": " + genreId("Drama") + "}";
+
+		perform(patch("/api/movies/genres"), "{\"remove\": [" + pair + "]}")
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.removed").value(0));
+		perform(patch("/api/movies/genres"), "{\"add\": [" + pair + "]}")
+				.andExpect(jsonPath("$.added").value(1));
+		perform(patch("/api/movies/genres"), "{\"remove\": [" + pair + "]}")
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.removed").value(1));
+		assertThat(movieRepository.countGenresByMovieId(movie)).isZero();
+	}
+
+	// a genre pair sent to the actor endpoint, or the other way round, has no id of the right kind
+	@Test
+	void pairOfTheOtherRelationIsRejected() throws Exception {
+		long movie = movieId("Movie 3");
+
+		perform(patch("/api/movies/actors"), "{\"add\": [{\"movieId\": " + movie + ", \"genreId\": " + actorId("Actor 1") + "}]}")
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("Actor ID is required")));
+		perform(patch("/api/movies/genres"), "{\"add\": [{\"movieId\": " + movie + ", \"actorId\": " + genreId("Drama") + "}]}")
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("Genre ID is required")));
+		assertThat(movieRepository.countActorsByMovieId(movie)).isZero();
+		assertThat(movieRepository.countGenresByMovieId(movie)).isZero();
+	}
+
+	@Test
+	void pairAddedAndRemovedAtOnceIsRejected() throws Exception {
+		String pair = "{\"movieId\": " + movieId("Movie 4") + ", \"actorId\": " + actorId("Actor 1") + "}";
+
+		perform(patch("/api/movies/actors"), "{\"add\": [" + pair + "], \"remove\": [" + pair + "]}")
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("cannot be both added to and removed from")));
+	}
+
+	// every missing id is reported and nothing is written
+	@Test
+	void unknownIdsAreReported() throws Exception {
+		long movie = movieId("Movie 4");
+
+		perform(patch("/api/movies/actors"), "{\"add\": [{\"movieId\": " + movie + ", \"actorId\": " + actorId("Actor 1") + "},"
+				+ " {\"movieId\": 999999, \"actorId\": 888888}]}")
+				.andExpect(status().isNotFound())
+				.andExpect(content().string(containsString("Movie with ID 999999 does not exist in database")))
+				.andExpect(content().string(containsString("Actor with ID 888888 does not exist in database")));
+		assertThat(movieRepository.countActorsByMovieId(movie)).isZero();
+	}
+
+	@Test
+	void morePairsThanTheLimitAreRejected() throws Exception {
+		long movie = movieId("Movie 5");
+		String pairs = IntStream.rangeClosed(1, RelationChanges.MAX_PAIRS + 1)
+				.mapToObj(i -> "{\"movieId\": " + movie + ", \"actorId\": " + i + "}")
+				.collect(Collectors.joining(",", "[", "]"));
+
+		perform(patch("/api/movies/actors"), "{\"add\": " + pairs + "}")
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("At most " + RelationChanges.MAX_PAIRS + " pairs can be added at once")));
+	}
+
+	@Test
+	void replacingTheCastWritesOnlyTheDifference() throws Exception {
+		long movie = movieId("Movie 6");
+		String uri = "/api/movies/" + movie + "/actors";
+
+		perform(put(uri), "[" + actorId("Actor 1") + ", " + actorId("Actor 2") + "]")
+				.andExpect(jsonPath("$.added").value(2))
+				.andExpect(jsonPath("$.removed").value(0));
+		perform(put(uri), "[" + actorId("Actor 2") + ", " + actorId("Actor 3") + "]")
+				.andExpect(jsonPath("$.added").value(1))
+				.andExpect(jsonPath("$.removed").value(1));
+		perform(put(uri), "[" + actorId("Actor 2") + ", " + actorId("Actor 3") + "]")
+				.andExpect(jsonPath("$.added").value(0))
+				.andExpect(jsonPath("$.removed").value(0));
+		assertThat(movieRepository.countActorsByMovieId(movie)).isEqualTo(2);
+	}
+}
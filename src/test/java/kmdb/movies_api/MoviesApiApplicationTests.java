@@ -3,7 +3,8 @@ package kmdb.movies_api;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// requests over the query budget of their endpoint fail in tests instead of only being logged
+@SpringBootTest(properties = "kmdb.query-count.enforce-budget=true")
 class MoviesApiApplicationTests {
 
 	@Test
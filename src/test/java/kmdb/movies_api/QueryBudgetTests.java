@@ -0,0 +1,168 @@
+package kmdb.movies_api;
+
+import kmdb.movies_api.config.QueryCountConfig;
+import kmdb.movies_api.controllers.QueryBudget;
+import kmdb.movies_api.entities.Movie;
+import kmdb.movies_api.repositories.ActorRepository;
+import kmdb.movies_api.repositories.GenreRepository;
+import kmdb.movies_api.repositories.MovieRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the statements run by the budgeted endpoints, on a database with more movies than one batch fetch loads
+// budgets are enforced, so a request over its budget fails with 500
+@SpringBootTest(properties = { "kmdb.query-count.enforce-budget=true", "kmdb.warmup.enabled=false" })
+@AutoConfigureMockMvc
+@Import(QueryBudgetTests.PerMovieLookups.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryBudgetTests {
+
+	private static final int MOVIES = 150;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private GenreRepository genreRepository;
+
+	@Autowired
+	private ActorRepository actorRepository;
+
+	private long genreId;
+	private long actorId;
+
+	// a new database for every run, kmdb.db is left alone
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) throws IOException {
+		Path file = Files.createTempFile("kmdb-test", ".db");
+		file.toFile().deleteOnExit();
+		registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + file);
+	}
+
+	@BeforeAll
+	void importCatalogue() throws Exception {
+		importRows("/api/genres/import", "[{\"name\": \"Drama\"}, {\"name\": \"Crime\"}]");
+		importRows("/api/actors/import", "[{\"name\": \"Actor 1\"}, {\"name\": \"Actor 2\"}, {\"name\": \"Actor 3\"}]");
+		importRows("/api/movies/import", IntStream.rangeClosed(1, MOVIES)
+				.mapToObj(i -> "{\"title\": \"Movie " + i + "\", \"releaseYear\": " + (1950 + i % 70) + ", \"duration\": 120,"
+						+ " \"genres\": [{\"name\": \"Drama\"}, {\"name\": \"Crime\"}],"
+						+ " \"actors\": [{\"name\": \"Actor 1\"}, {\"name\": \"Actor " + (2 + i % 2) + "\"}]}")
+				.collect(Collectors.joining(",", "[", "]")));
+
+		genreId = genreRepository.findAllByNameIn(Set.of("Drama")).get(0).getId();
+		actorId = actorRepository.findAllByNameIn(Set.of("Actor 1")).get(0).getId();
+	}
+
+	private void importRows(String path, String rows) throws Exception {
+		mockMvc.perform(post(path).contentType(MediaType.APPLICATION_JSON).content(rows))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"errors\":[]")));
+	}
+
+	private int statements(String uri) throws Exception {
+		MvcResult result = mockMvc.perform(get(uri)).andExpect(status().isOk()).andReturn();
+		return Integer.parseInt(result.getResponse().getHeader(QueryCountConfig.STATEMENTS_HEADER));
+	}
+
+	@Test
+	void actorAndGenrePagesRunOneStatement() throws Exception {
+		assertThat(statements("/api/actors?page=0&size=2")).isEqualTo(1);
+		assertThat(statements("/api/genres?page=0&size=1")).isEqualTo(1);
+	}
+
+	// the page itself and one batch fetch each for actors and genres, no count of all movies
+	@Test
+	void moviePageRunsNoCount() throws Exception {
+		assertThat(statements("/api/movies?page=0&size=5")).isEqualTo(3);
+	}
+
+	// relations are batch fetched for the whole page, a statement per movie would show up as a larger count
+	@Test
+	void moviePagesRunTheSameStatementsWhateverTheirSize() throws Exception {
+		List<String> pages = List.of(
+				"/api/movies?page=0&size=%d",
+				"/api/movies?after=&size=%d",
+				"/api/movies?releaseYearFrom=1900&releaseYearTo=2100&page=0&size=%d",
+				"/api/movies?genre=" + genreId + "&page=0&size=%d",
+				"/api/movies?actor=" + actorId + "&page=0&size=%d",
+				"/api/movies/query?genre=" + genreId + "&size=%d",
+				"/api/movies/summaries?genre=" + genreId + "&page=0&size=%d");
+		for (String page : pages) {
+			assertThat(statements(page.formatted(100)))
+					.as(page)
+					.isEqualTo(statements(page.formatted(1)));
+		}
+	}
+
+	// every matching movie is returned, batch fetching runs two statements for every 100 movies
+	@Test
+	void endpointsWithoutPageAreNotLimited() throws Exception {
+		assertThat(statements("/api/movies")).isGreaterThan(3);
+		assertThat(statements("/api/movies?genre=" + genreId)).isGreaterThan(3);
+		assertThat(statements("/api/movies?actor=" + actorId)).isGreaterThan(3);
+		assertThat(statements("/api/movies/search")).isGreaterThan(3);
+	}
+
+	@Test
+	void repeatedMovieIsServedFromCache() throws Exception {
+		statements("/api/movies/1");
+		assertThat(statements("/api/movies/1")).isZero();
+	}
+
+	// the N+1 pattern the budgets are there to catch
+	@Test
+	void lookupPerMovieExceedsItsBudget() throws Exception {
+		mockMvc.perform(get("/test/movies/actors"))
+				.andExpect(status().isInternalServerError())
+				.andExpect(header().string(QueryCountConfig.STATEMENTS_HEADER, "3"))
+				.andExpect(content().string(containsString("exceeded its budget of 2 SQL statements")));
+	}
+
+	@TestConfiguration
+	@RestController
+	static class PerMovieLookups {
+
+		@Autowired
+		private MovieRepository movieRepository;
+
+		// loads the actors of every movie with its own statement
+		@GetMapping("/test/movies/actors")
+		@QueryBudget(statements = 2)
+		public int actorsOfFirstMovies() {
+			return LongStream.rangeClosed(1, 10)
+					.mapToObj(movieRepository::findWithActorsById)
+					.mapToInt(movie -> movie.map(Movie::getActors).map(Set::size).orElse(0))
+					.sum();
+		}
+	}
+}